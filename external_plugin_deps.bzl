@@ -0,0 +1,28 @@
+load("//tools/bzl:maven_jar.bzl", "maven_jar")
+
+JMH_VERS = "1.21"
+
+def external_plugin_deps():
+    maven_jar(
+        name = "jmh-core",
+        artifact = "org.openjdk.jmh:jmh-core:" + JMH_VERS,
+        sha1 = "442447101f63074c61063858033fbfde8a076873",
+    )
+
+    maven_jar(
+        name = "jmh-annprocess",
+        artifact = "org.openjdk.jmh:jmh-generator-annprocess:" + JMH_VERS,
+        sha1 = "7aac374614a8a76cad16b91f1a4419d31a7dcda3",
+    )
+
+    maven_jar(
+        name = "jopt-simple",
+        artifact = "net.sf.jopt-simple:jopt-simple:4.6",
+        sha1 = "306816fb57cf94f108a43c95731b08934dcae15c",
+    )
+
+    maven_jar(
+        name = "commons-math3",
+        artifact = "org.apache.commons:commons-math3:3.2",
+        sha1 = "ec2544ab27e110d2d431bdad7d538ed509b21e62",
+    )
@@ -0,0 +1,220 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.common.base.Splitter;
+import com.google.gerrit.extensions.client.ListChangesOption;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.common.ProjectInfo;
+import com.google.gerrit.extensions.restapi.Url;
+import com.google.gerrit.server.OutputFormat;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.http.server.GitServlet;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.resolver.RepositoryResolver;
+
+/**
+ * Serves a {@link SyntheticProject} like a source Gerrit server: the REST endpoints that {@link
+ * RemoteApi} uses and the git repository over HTTP.
+ *
+ * <p>Like Gerrit the server serves everything below {@code /a/}. No authentication is required, so
+ * any user and password can be used for the import.
+ */
+class FakeGerritServer implements AutoCloseable {
+  private static final String VERSION = "2.15";
+  private static final String JSON_MAGIC = ")]}'\n";
+  private static final Gson GSON = OutputFormat.JSON_COMPACT.newGson();
+
+  private final SyntheticProject project;
+  private final Map<Integer, ChangeInfo> changesByNumber = new HashMap<>();
+  private final Server server;
+
+  FakeGerritServer(SyntheticProject project) throws Exception {
+    this.project = project;
+    for (ChangeInfo c : project.changes) {
+      changesByNumber.put(c._number, c);
+    }
+
+    server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setHost("localhost");
+    connector.setPort(0);
+    server.addConnector(connector);
+
+    ServletContextHandler context = new ServletContextHandler();
+    context.setContextPath("/");
+    ServletHolder rest = new ServletHolder(new RestServlet());
+    context.addServlet(rest, "/a/projects/*");
+    context.addServlet(rest, "/a/changes/*");
+    context.addServlet(rest, "/a/accounts/*");
+    context.addServlet(rest, "/a/groups/*");
+    context.addServlet(rest, "/a/config/*");
+    GitServlet git = new GitServlet();
+    git.setRepositoryResolver(new ProjectResolver());
+    context.addServlet(new ServletHolder(git), "/a/*");
+    server.setHandler(context);
+    server.start();
+  }
+
+  /** @return the URL of the server, to be used as {@code from} of the import */
+  String getUrl() {
+    return "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+  }
+
+  @Override
+  public void close() throws Exception {
+    server.stop();
+  }
+
+  private class ProjectResolver implements RepositoryResolver<HttpServletRequest> {
+    @Override
+    public Repository open(HttpServletRequest req, String name)
+        throws RepositoryNotFoundException {
+      if (!project.name.equals(name)) {
+        throw new RepositoryNotFoundException(name);
+      }
+      project.repo.incrementOpen();
+      return project.repo;
+    }
+  }
+
+  private class RestServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws IOException {
+      List<String> path =
+          Splitter.on('/').omitEmptyStrings().splitToList(req.getRequestURI().substring(2));
+      JsonElement result = null;
+      switch (path.get(0)) {
+        case "config":
+          if (path.size() == 3 && path.get(2).equals("version")) {
+            result = GSON.toJsonTree(VERSION);
+          }
+          break;
+        case "projects":
+          result = getProject(path);
+          break;
+        case "changes":
+          result = path.size() == 1 ? queryChanges(req) : getComments(path);
+          break;
+        case "accounts":
+          if (path.size() == 3 && path.get(2).equals("sshkeys")) {
+            result = new JsonArray();
+          }
+          break;
+        case "groups":
+        default:
+          // the synthetic project doesn't reference any groups
+          break;
+      }
+
+      if (result == null) {
+        res.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+      res.setContentType("application/json");
+      res.setCharacterEncoding(StandardCharsets.UTF_8.name());
+      Writer w = res.getWriter();
+      w.write(JSON_MAGIC);
+      GSON.toJson(result, w);
+      w.flush();
+    }
+
+    private JsonElement getProject(List<String> path) {
+      if (path.size() < 2 || !project.name.equals(Url.decode(path.get(1)))) {
+        return null;
+      }
+      if (path.size() == 2) {
+        ProjectInfo p = new ProjectInfo();
+        p.id = project.name;
+        p.name = project.name;
+        p.parent = "All-Projects";
+        return GSON.toJsonTree(p);
+      }
+      if (path.size() == 3 && path.get(2).equals("statistics.git")) {
+        JsonObject statistics = new JsonObject();
+        statistics.addProperty("size_of_loose_objects", 0);
+        statistics.addProperty("size_of_packed_objects", 0);
+        return statistics;
+      }
+      return null;
+    }
+
+    /**
+     * Pages through the changes of the project. A query for {@code change:<number>} returns the
+     * single change, other query operators are ignored.
+     */
+    private JsonElement queryChanges(HttpServletRequest req) {
+      int start = intParameter(req, "S", 0);
+      int limit = intParameter(req, "n", Integer.MAX_VALUE);
+      int options = Integer.parseInt(req.getParameter("O"), 16);
+      boolean details = (options & (1 << ListChangesOption.MESSAGES.getValue())) != 0;
+      List<ChangeInfo> changes = details ? project.changes : project.summaries;
+
+      JsonArray result = new JsonArray();
+      for (String op : Splitter.on(' ').omitEmptyStrings().split(req.getParameter("q"))) {
+        if (op.startsWith("change:")) {
+          ChangeInfo c = changesByNumber.get(Integer.parseInt(op.substring("change:".length())));
+          if (c != null) {
+            result.add(GSON.toJsonTree(details ? c : project.summaries.get(c._number - 1)));
+          }
+          return result;
+        }
+      }
+      int end = (int) Math.min((long) start + limit, changes.size());
+      for (int i = start; i < end; i++) {
+        result.add(GSON.toJsonTree(changes.get(i)));
+      }
+      if (end < changes.size() && result.size() > 0) {
+        // set on the JSON, the change infos are shared between requests
+        result.get(result.size() - 1).getAsJsonObject().addProperty("_more_changes", true);
+      }
+      return result;
+    }
+
+    /** Serves {@code /changes/<number>/revisions/<commit>/comments}. */
+    private JsonElement getComments(List<String> path) {
+      if (path.size() != 5 || !path.get(2).equals("revisions") || !path.get(4).equals("comments")) {
+        return null;
+      }
+      Map<String, List<CommentInfo>> comments = project.comments.get(path.get(3));
+      return comments != null ? GSON.toJsonTree(comments) : null;
+    }
+
+    private int intParameter(HttpServletRequest req, String name, int defaultValue) {
+      String value = req.getParameter(name);
+      return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+  }
+}
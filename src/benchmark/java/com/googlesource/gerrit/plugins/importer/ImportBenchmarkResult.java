@@ -0,0 +1,118 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.server.OutputFormat;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** The result of an {@link ImportThroughputBenchmark} run, written as JSON and as CSV. */
+class ImportBenchmarkResult {
+  static class Iteration {
+    int iteration;
+    long timeMs;
+    double changesPerSecond;
+    double patchSetsPerSecond;
+    double commentsPerSecond;
+    Map<String, StepStatistic> steps;
+  }
+
+  int changes;
+  int patchSets;
+  int comments;
+  int voters;
+  int warmupIterations;
+  long meanTimeMs;
+  double meanChangesPerSecond;
+  List<Iteration> iterations = new ArrayList<>();
+
+  ImportBenchmarkResult(SyntheticProject project, int warmupIterations) {
+    this.changes = project.numChanges;
+    this.patchSets = project.numPatchSets;
+    this.comments = project.numComments;
+    this.voters = project.numVoters;
+    this.warmupIterations = warmupIterations;
+  }
+
+  void add(SyntheticProject project, ImportStatistic statistic) {
+    Iteration i = new Iteration();
+    i.iteration = iterations.size() + 1;
+    i.timeMs = statistic.timeMs;
+    i.changesPerSecond = perSecond(project.numChanges, statistic.timeMs);
+    i.patchSetsPerSecond = perSecond(project.totalPatchSets(), statistic.timeMs);
+    i.commentsPerSecond = perSecond(project.totalComments(), statistic.timeMs);
+    i.steps = statistic.steps;
+    iterations.add(i);
+
+    long total = 0;
+    for (Iteration it : iterations) {
+      total += it.timeMs;
+    }
+    meanTimeMs = total / iterations.size();
+    meanChangesPerSecond = perSecond(project.numChanges, meanTimeMs);
+  }
+
+  void writeJson(Path file) throws IOException {
+    try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      OutputFormat.JSON.newGson().toJson(this, w);
+    }
+  }
+
+  /** Writes one row per iteration and step, the {@code total} row holds the whole import. */
+  void writeCsv(Path file) throws IOException {
+    try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      w.write(
+          "changes,patch_sets,comments,voters,iteration,step,time_ms,allocated_bytes,"
+              + "changes_per_second\n");
+      String params = String.format(Locale.US, "%d,%d,%d,%d", changes, patchSets, comments, voters);
+      for (Iteration i : iterations) {
+        w.write(
+            String.format(
+                Locale.US,
+                "%s,%d,total,%d,,%.2f\n",
+                params,
+                i.iteration,
+                i.timeMs,
+                i.changesPerSecond));
+        if (i.steps == null) {
+          continue;
+        }
+        for (Map.Entry<String, StepStatistic> e : i.steps.entrySet()) {
+          StepStatistic s = e.getValue();
+          w.write(
+              String.format(
+                  Locale.US,
+                  "%s,%d,%s,%d,%s,\n",
+                  params,
+                  i.iteration,
+                  e.getKey(),
+                  s.timeMs,
+                  s.allocatedBytes != null ? s.allocatedBytes : ""));
+        }
+      }
+    }
+  }
+
+  private static double perSecond(int count, long timeMs) {
+    return timeMs > 0 ? count * 1000.0 / timeMs : 0;
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Strings;
+import com.google.gerrit.acceptance.LightweightPluginDaemonTest;
+import com.google.gerrit.acceptance.TestPlugin;
+import com.google.gerrit.acceptance.UseLocalDisk;
+import com.google.gerrit.server.OutputFormat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of an end-to-end project import.
+ *
+ * <p>A {@link SyntheticProject} is served by a {@link FakeGerritServer} and imported several times
+ * into the test server, each time into a new project. The first imports are a warm-up, they also
+ * create the accounts of the source project. The import time and the time and allocation per step,
+ * as recorded by {@link StepTimer}, are written to {@code import-benchmark.json} and {@code
+ * import-benchmark.csv}.
+ *
+ * <p>The size of the project and the number of runs are set by system properties:
+ *
+ * <ul>
+ *   <li>{@code importer.benchmark.changes}: number of changes (default 100)
+ *   <li>{@code importer.benchmark.patchSets}: patch sets per change (default 3)
+ *   <li>{@code importer.benchmark.comments}: inline comments per patch set (default 5)
+ *   <li>{@code importer.benchmark.voters}: accounts that vote on each change (default 3)
+ *   <li>{@code importer.benchmark.warmup}: number of warm-up imports (default 1)
+ *   <li>{@code importer.benchmark.iterations}: number of measured imports (default 3)
+ *   <li>{@code importer.benchmark.output}: directory for the results (default: the undeclared
+ *       test outputs directory of Bazel or the temporary directory)
+ * </ul>
+ */
+@TestPlugin(
+    name = "importer",
+    sysModule = "com.googlesource.gerrit.plugins.importer.Module",
+    sshModule = "com.googlesource.gerrit.plugins.importer.SshModule",
+    httpModule = "com.googlesource.gerrit.plugins.importer.HttpModule")
+public class ImportThroughputBenchmark extends LightweightPluginDaemonTest {
+  private static final String PROPERTY_PREFIX = "importer.benchmark.";
+  private static final String SOURCE_PROJECT = "benchmark-project";
+
+  @Test
+  @UseLocalDisk
+  public void importProject() throws Exception {
+    SyntheticProject project =
+        new SyntheticProject(
+            SOURCE_PROJECT,
+            intProperty("changes", 100),
+            intProperty("patchSets", 3),
+            intProperty("comments", 5),
+            intProperty("voters", 3));
+    int warmup = intProperty("warmup", 1);
+    int iterations = intProperty("iterations", 3);
+
+    ImportBenchmarkResult result = new ImportBenchmarkResult(project, warmup);
+    try (FakeGerritServer server = new FakeGerritServer(project)) {
+      for (int i = 0; i < warmup + iterations; i++) {
+        ImportStatistic statistic = importProject(server, "benchmark-import-" + i);
+        assertThat(statistic.numChangesCreated).isEqualTo(project.numChanges);
+        if (i >= warmup) {
+          result.add(project, statistic);
+        }
+      }
+    }
+
+    Path dir = getOutputDir();
+    Files.createDirectories(dir);
+    result.writeJson(dir.resolve("import-benchmark.json"));
+    result.writeCsv(dir.resolve("import-benchmark.csv"));
+  }
+
+  private ImportStatistic importProject(FakeGerritServer server, String targetProject)
+      throws Exception {
+    ImportProject.Input input = new ImportProject.Input();
+    input.from = server.getUrl();
+    input.name = SOURCE_PROJECT;
+    input.user = "benchmark";
+    input.pass = "benchmark";
+    // the response of the test REST session, not the response of the source server
+    com.google.gerrit.acceptance.RestResponse r =
+        adminRestSession.put("/config/server/importer~projects/" + targetProject, input);
+    r.assertCreated();
+    return OutputFormat.JSON_COMPACT
+        .newGson()
+        .fromJson(r.getEntityContent(), ResumeImportStatistic.class);
+  }
+
+  private static Path getOutputDir() {
+    String dir = System.getProperty(PROPERTY_PREFIX + "output");
+    if (Strings.isNullOrEmpty(dir)) {
+      dir = System.getenv("TEST_UNDECLARED_OUTPUTS_DIR");
+    }
+    if (Strings.isNullOrEmpty(dir)) {
+      dir = System.getProperty("java.io.tmpdir");
+    }
+    return Paths.get(dir);
+  }
+
+  private static int intProperty(String name, int defaultValue) {
+    return Integer.getInteger(PROPERTY_PREFIX + name, defaultValue);
+  }
+}
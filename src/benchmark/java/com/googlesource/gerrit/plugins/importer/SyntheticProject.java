@@ -0,0 +1,222 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.ApprovalInfo;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.ChangeMessageInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.common.LabelInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.PatchSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * A generated source project with {@code changes} changes of {@code patchSets} patch sets each.
+ * Every patch set has {@code comments} inline comments and every change is voted by {@code voters}
+ * accounts.
+ *
+ * <p>The git repository is kept in memory and contains a master branch and the refs of all patch
+ * sets. The change details and the inline comments are kept in the format in which the REST API of
+ * the source Gerrit server returns them.
+ */
+class SyntheticProject {
+  static final String LABEL = "Code-Review";
+  static final String FILE = "file.txt";
+
+  private static final long START_MS = Timestamp.valueOf("2018-01-01 00:00:00").getTime();
+
+  final String name;
+  final int numChanges;
+  final int numPatchSets;
+  final int numComments;
+  final int numVoters;
+
+  final InMemoryRepository repo;
+  final List<ChangeInfo> changes = new ArrayList<>();
+
+  /** Change details without messages, labels and commits, as queried for change summaries. */
+  final List<ChangeInfo> summaries = new ArrayList<>();
+
+  /** Inline comments by commit of the patch set, grouped by file. */
+  final Map<String, Map<String, List<CommentInfo>>> comments = new HashMap<>();
+
+  final AccountInfo owner;
+  final List<AccountInfo> voters = new ArrayList<>();
+
+  SyntheticProject(String name, int numChanges, int numPatchSets, int numComments, int numVoters)
+      throws Exception {
+    this.name = name;
+    this.numChanges = numChanges;
+    this.numPatchSets = numPatchSets;
+    this.numComments = numComments;
+    this.numVoters = numVoters;
+    this.repo = new InMemoryRepository(new DfsRepositoryDescription(name));
+    this.owner = account(1, "owner");
+    for (int i = 1; i <= numVoters; i++) {
+      voters.add(account(i + 1, "voter-" + i));
+    }
+    generate();
+  }
+
+  private void generate() throws Exception {
+    TestRepository<InMemoryRepository> tr = new TestRepository<>(repo);
+    RevCommit master =
+        tr.branch("refs/heads/master")
+            .commit()
+            .message("Initial commit")
+            .add(FILE, "initial content\n")
+            .create();
+
+    for (int n = 1; n <= numChanges; n++) {
+      String changeId = String.format("I%040x", n);
+      ChangeInfo c = new ChangeInfo();
+      c._number = n;
+      c.id = name + "~master~" + changeId;
+      c.changeId = changeId;
+      c.project = name;
+      c.branch = "master";
+      c.subject = "Change " + n;
+      c.status = ChangeStatus.NEW;
+      c.owner = owner;
+      c.created = timestamp(n, 0);
+      c.updated = timestamp(n, numPatchSets);
+      c.hashtags = Collections.singletonList("benchmark");
+      c.revisions = new LinkedHashMap<>();
+      c.messages = new ArrayList<>();
+
+      ChangeInfo summary = new ChangeInfo();
+      summary._number = c._number;
+      summary.id = c.id;
+      summary.changeId = c.changeId;
+      summary.project = c.project;
+      summary.branch = c.branch;
+      summary.status = c.status;
+      summary.created = c.created;
+      summary.updated = c.updated;
+      summary.revisions = new LinkedHashMap<>();
+
+      for (int p = 1; p <= numPatchSets; p++) {
+        RevCommit commit =
+            tr.commit()
+                .parent(master)
+                .message(c.subject + "\n\nChange-Id: " + changeId + "\n")
+                .add(FILE, String.format("change %d, patch set %d\n", n, p))
+                .create();
+        String ref = new PatchSet.Id(new Change.Id(n), p).toRefName();
+        tr.update(ref, commit);
+
+        RevisionInfo r = new RevisionInfo();
+        r._number = p;
+        r.ref = ref;
+        r.created = timestamp(n, p);
+        r.uploader = owner;
+        c.revisions.put(commit.name(), r);
+        c.currentRevision = commit.name();
+
+        RevisionInfo s = new RevisionInfo();
+        s._number = r._number;
+        s.ref = r.ref;
+        summary.revisions.put(commit.name(), s);
+
+        ChangeMessageInfo m = new ChangeMessageInfo();
+        m.id = String.format("m-%d-%d", n, p);
+        m.author = owner;
+        m.date = r.created;
+        m.message = "Uploaded patch set " + p + ".";
+        m._revisionNumber = p;
+        c.messages.add(m);
+
+        comments.put(commit.name(), comments(n, p, r.created));
+      }
+
+      LabelInfo label = new LabelInfo();
+      label.all = new ArrayList<>();
+      for (AccountInfo voter : voters) {
+        ApprovalInfo a = new ApprovalInfo(voter._accountId);
+        a.name = voter.name;
+        a.email = voter.email;
+        a.username = voter.username;
+        a.value = 1;
+        a.date = c.updated;
+        label.all.add(a);
+
+        ChangeMessageInfo m = new ChangeMessageInfo();
+        m.id = String.format("m-%d-%s", n, voter.username);
+        m.author = voter;
+        m.date = c.updated;
+        m.message = "Patch Set " + numPatchSets + ": " + LABEL + "+1";
+        m._revisionNumber = numPatchSets;
+        c.messages.add(m);
+      }
+      c.labels = Collections.singletonMap(LABEL, label);
+
+      changes.add(c);
+      summaries.add(summary);
+    }
+  }
+
+  private Map<String, List<CommentInfo>> comments(int change, int patchSet, Timestamp ts) {
+    List<CommentInfo> result = new ArrayList<>(numComments);
+    for (int k = 1; k <= numComments; k++) {
+      CommentInfo comment = new CommentInfo();
+      comment.id = String.format("c-%d-%d-%d", change, patchSet, k);
+      comment.line = 1;
+      comment.message = "Comment " + k;
+      comment.updated = ts;
+      comment.author = voters.isEmpty() ? owner : voters.get(k % voters.size());
+      result.add(comment);
+    }
+    return Collections.singletonMap(FILE, result);
+  }
+
+  /** @return the number of patch sets of all changes */
+  int totalPatchSets() {
+    return numChanges * numPatchSets;
+  }
+
+  /** @return the number of inline comments of all patch sets */
+  int totalComments() {
+    return totalPatchSets() * numComments;
+  }
+
+  private static AccountInfo account(int id, String username) {
+    AccountInfo a = new AccountInfo(id);
+    a.name = "Benchmark " + username;
+    a.email = username + "@example.com";
+    a.username = username;
+    return a;
+  }
+
+  /** Changes are one day apart, the patch sets of a change are one minute apart. */
+  private static Timestamp timestamp(int change, int patchSet) {
+    return new Timestamp(
+        START_MS + TimeUnit.DAYS.toMillis(change) + TimeUnit.MINUTES.toMillis(patchSet));
+  }
+}
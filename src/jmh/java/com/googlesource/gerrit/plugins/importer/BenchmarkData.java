@@ -0,0 +1,147 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.ApprovalInfo;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.ChangeMessageInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.common.CommitInfo;
+import com.google.gerrit.extensions.common.GitPerson;
+import com.google.gerrit.extensions.common.LabelInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.restapi.Url;
+import com.google.gerrit.server.OutputFormat;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Generates the responses of a source Gerrit server for the benchmarks. */
+class BenchmarkData {
+  private static final Timestamp TS = Timestamp.valueOf("2018-01-01 00:00:00");
+
+  /**
+   * @return a page of {@code changes} changes with all details, each change has {@code patchSets}
+   *     patch sets and is voted by {@code voters} accounts
+   */
+  static List<ChangeInfo> changes(int changes, int patchSets, int voters) {
+    List<ChangeInfo> result = new ArrayList<>(changes);
+    for (int n = 1; n <= changes; n++) {
+      ChangeInfo c = new ChangeInfo();
+      c._number = n;
+      c.changeId = String.format("I%040x", n);
+      c.id = "project~master~" + c.changeId;
+      c.project = "project";
+      c.branch = "master";
+      c.subject = "Change " + n;
+      c.status = ChangeStatus.NEW;
+      c.owner = account(0);
+      c.created = TS;
+      c.updated = TS;
+      c.revisions = new LinkedHashMap<>();
+      c.messages = new ArrayList<>();
+      for (int p = 1; p <= patchSets; p++) {
+        String commit = String.format("%040x", n * 1000 + p);
+        RevisionInfo r = new RevisionInfo();
+        r._number = p;
+        r.ref = String.format("refs/changes/%02d/%d/%d", n % 100, n, p);
+        r.created = TS;
+        r.uploader = c.owner;
+        r.commit = new CommitInfo();
+        r.commit.parents = Collections.singletonList(new CommitInfo());
+        r.commit.parents.get(0).commit = String.format("%040x", 0);
+        r.commit.author = person(c.owner);
+        r.commit.committer = r.commit.author;
+        r.commit.subject = c.subject;
+        r.commit.message = c.subject + "\n\nChange-Id: " + c.changeId + "\n";
+        c.revisions.put(commit, r);
+        c.currentRevision = commit;
+
+        ChangeMessageInfo m = new ChangeMessageInfo();
+        m.id = String.format("m-%d-%d", n, p);
+        m.author = c.owner;
+        m.date = TS;
+        m.message = "Uploaded patch set " + p + ".";
+        m._revisionNumber = p;
+        c.messages.add(m);
+      }
+      LabelInfo label = new LabelInfo();
+      label.all = new ArrayList<>();
+      for (int v = 1; v <= voters; v++) {
+        AccountInfo a = account(v);
+        ApprovalInfo approval = new ApprovalInfo(a._accountId);
+        approval.name = a.name;
+        approval.email = a.email;
+        approval.username = a.username;
+        approval.value = 1;
+        approval.date = TS;
+        label.all.add(approval);
+      }
+      c.labels = Collections.singletonMap("Code-Review", label);
+      result.add(c);
+    }
+    return result;
+  }
+
+  /**
+   * @return the comments of a revision as returned by the source server, {@code comments} comments
+   *     on each of {@code files} files, written by {@code authors} accounts
+   */
+  static Map<String, List<CommentInfo>> comments(int files, int comments, int authors) {
+    Map<String, List<CommentInfo>> result = new LinkedHashMap<>();
+    for (int f = 1; f <= files; f++) {
+      List<CommentInfo> list = new ArrayList<>(comments);
+      for (int k = 1; k <= comments; k++) {
+        CommentInfo c = new CommentInfo();
+        // the UUIDs are URL encoded by the REST API
+        c.id = Url.encode(String.format("%08x_%08x", f, k));
+        c.line = k;
+        c.message = "Comment " + k;
+        c.updated = TS;
+        c.author = account(1 + k % Math.max(authors, 1));
+        list.add(c);
+      }
+      result.put("dir/file-" + f + ".txt", list);
+    }
+    return result;
+  }
+
+  /** @return the JSON of a REST response, without the magic prefix */
+  static String toJson(Object o) {
+    return OutputFormat.JSON_COMPACT.newGson().toJson(o);
+  }
+
+  private static AccountInfo account(int id) {
+    AccountInfo a = new AccountInfo(1000000 + id);
+    a.username = "user-" + id;
+    a.name = "User " + id;
+    a.email = a.username + "@example.com";
+    return a;
+  }
+
+  private static GitPerson person(AccountInfo a) {
+    GitPerson p = new GitPerson();
+    p.name = a.name;
+    p.email = a.email;
+    p.date = TS;
+    p.tz = 0;
+    return p;
+  }
+}
@@ -0,0 +1,101 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Formatting of an entry of the import log by {@link ImportLogLayout}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImportLogLayoutBenchmark {
+  private static final String[] STEPS = {
+    "fetch",
+    "update_refs",
+    "query_changes",
+    "replay_revisions",
+    "replay_inline_comments",
+    "replay_messages",
+    "add_approvals",
+    "add_hashtags",
+    "insert_link_to_original_change",
+    "flush_and_index",
+    "replay_changes",
+    "import_groups",
+    "gc"
+  };
+
+  private ImportLogLayout layout;
+  private LoggingEvent event;
+
+  @Setup
+  public void setUp() {
+    ImportLogEntry entry = new ImportLogEntry();
+    entry.status = "OK";
+    entry.accountId = 1000000;
+    entry.userName = "admin";
+    entry.from = "https://some-gerrit-server:8080";
+    entry.srcProjectName = "srcName";
+    entry.targetProjectName = "targetName";
+    entry.timeMs = 123456;
+    entry.numChangesCreated = 1000;
+    entry.numRefsUpdated = 10;
+    entry.changeQueryBytes = 12345678L;
+    entry.steps = new LinkedHashMap<>();
+    for (String step : STEPS) {
+      StepStatistic s = new StepStatistic();
+      s.timeMs = 1234;
+      s.allocatedBytes = 123456789L;
+      entry.steps.put(step, s);
+    }
+
+    layout = new ImportLogLayout();
+    Logger log = Logger.getLogger(ImportLogLayoutBenchmark.class);
+    event =
+        new LoggingEvent(
+            Logger.class.getName(),
+            log,
+            System.currentTimeMillis(),
+            Level.INFO,
+            entry,
+            Thread.currentThread().getName(),
+            null,
+            null,
+            null,
+            null);
+  }
+
+  @Benchmark
+  public String format() {
+    return layout.format(event);
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.server.OutputFormat;
+import com.google.gson.reflect.TypeToken;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of the change pages and the comments that {@link RemoteApi} retrieves from the source
+ * server.
+ *
+ * <p>The {@code WithNewGson} benchmarks are the baseline: they decode like {@link RemoteApi} did
+ * before it shared one Gson instance, with a new Gson instance and a new type token per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RemoteApiBenchmark {
+  /** Changes per page, the default page size of the change query is 25. */
+  @Param({"1", "25"})
+  public int changes;
+
+  private String changePage;
+  private String comments;
+
+  @Setup
+  public void setUp() {
+    changePage = BenchmarkData.toJson(BenchmarkData.changes(changes, 3, 3));
+    comments = BenchmarkData.toJson(BenchmarkData.comments(3, 10, 3));
+  }
+
+  @Benchmark
+  public List<ChangeInfo> parseChanges() {
+    return RemoteApi.parseChanges(new StringReader(changePage));
+  }
+
+  @Benchmark
+  public List<ChangeInfo> parseChangesWithNewGson() {
+    return OutputFormat.JSON_COMPACT
+        .newGson()
+        .fromJson(new StringReader(changePage), new TypeToken<List<ChangeInfo>>() {}.getType());
+  }
+
+  @Benchmark
+  public Iterable<CommentInfo> parseComments() {
+    return RemoteApi.parseComments(new StringReader(comments));
+  }
+
+  @Benchmark
+  public Map<String, List<CommentInfo>> parseCommentsWithNewGson() {
+    return OutputFormat.JSON_COMPACT
+        .newGson()
+        .fromJson(
+            new StringReader(comments),
+            new TypeToken<Map<String, List<CommentInfo>>>() {}.getType());
+  }
+}
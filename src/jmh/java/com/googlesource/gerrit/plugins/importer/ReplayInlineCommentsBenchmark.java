@@ -0,0 +1,133 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Multimap;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.restapi.Url;
+import com.google.gerrit.reviewdb.client.Account;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Filtering and grouping of the comments of a revision in {@link ReplayInlineCommentsStep}.
+ *
+ * <p>The comments are filtered as on a resume, when 90% of the comments were imported before. The
+ * filter benchmarks copy the comment lists first, since the baseline {@link
+ * #filterCommentsByRemoval()} removes the existing comments from the lists, as {@link
+ * ReplayInlineCommentsStep} did before it copied the new comments.
+ *
+ * <p>The authors are resolved by account ID, so {@link #groupByAuthor()} measures the grouping
+ * itself and not the account lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayInlineCommentsBenchmark {
+  /** Comments of the revision, all on one file. */
+  @Param({"10", "100", "1000"})
+  public int comments;
+
+  private List<CommentInfo> list;
+  private Set<String> existingUuids;
+  private ReplayInlineCommentsStep.AuthorResolver resolver;
+
+  @Setup
+  public void setUp() {
+    Map<String, List<CommentInfo>> byFile = BenchmarkData.comments(1, comments, 3);
+    list = Iterables.getOnlyElement(byFile.values());
+    existingUuids = new HashSet<>();
+    for (int i = 0; i < list.size(); i++) {
+      if (i % 10 != 0) {
+        existingUuids.add(Url.decode(list.get(i).id));
+      }
+    }
+    resolver =
+        new ReplayInlineCommentsStep.AuthorResolver() {
+          @Override
+          public Account.Id resolve(AccountInfo author) {
+            return new Account.Id(author._accountId);
+          }
+        };
+  }
+
+  @Benchmark
+  public List<CommentInfo> filterComments() {
+    return ReplayInlineCommentsStep.filterComments(existingUuids, copy());
+  }
+
+  @Benchmark
+  public Iterable<CommentInfo> filterCommentsByRemoval() {
+    Iterable<CommentInfo> result = copy();
+    Iterator<CommentInfo> it = result.iterator();
+    while (it.hasNext()) {
+      if (existingUuids.contains(Url.decode(it.next().id))) {
+        it.remove();
+      }
+    }
+    return result;
+  }
+
+  @Benchmark
+  public Multimap<Account.Id, CommentInfo> groupByAuthor() throws Exception {
+    return ReplayInlineCommentsStep.groupByAuthor(list, resolver);
+  }
+
+  /** Decodes the UUIDs once per comment, as the comments are inserted. */
+  @Benchmark
+  public void decodeUuidOnce(Blackhole bh) {
+    for (CommentInfo c : list) {
+      String uuid = Url.decode(c.id);
+      bh.consume(uuid);
+      bh.consume(uuid);
+    }
+  }
+
+  /** Baseline, decodes the UUID for the lookup of the draft and again for the key. */
+  @Benchmark
+  public void decodeUuidTwice(Blackhole bh) {
+    for (CommentInfo c : list) {
+      bh.consume(Url.decode(c.id));
+      bh.consume(Url.decode(c.id));
+    }
+  }
+
+  /** Copies the comments like they are returned by {@link RemoteApi#parseComments}. */
+  private Iterable<CommentInfo> copy() {
+    return Iterables.concat(new ArrayList<>(list));
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.googlesource.gerrit.plugins.importer.GerritApi.Version;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing and comparison of {@link Version}.
+ *
+ * <p>{@link #parseCompilingPattern()} is the baseline: it compiles the version pattern on every
+ * parse, as {@link Version} did before the pattern became a constant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+  private static final String REGEX = "(\\d+)\\.(\\d+)(\\.(\\d+))?(\\.(\\d+))?(-(.+))?";
+
+  private String formatted;
+  private Version version;
+  private Version required;
+
+  @Setup
+  public void setUp() {
+    formatted = "2.15.3-1-gabcdef0";
+    version = new Version(formatted);
+    required = new Version("2.11.2");
+  }
+
+  @Benchmark
+  public Object parse() {
+    return new Version(formatted);
+  }
+
+  @Benchmark
+  public Object parseCompilingPattern(Blackhole bh) {
+    bh.consume(Pattern.compile(REGEX).matcher(formatted).matches());
+    return new Version(formatted);
+  }
+
+  @Benchmark
+  public int compare() {
+    return version.compareTo(required);
+  }
+}
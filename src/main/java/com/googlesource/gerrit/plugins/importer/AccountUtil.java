@@ -14,6 +14,7 @@
 
 package com.googlesource.gerrit.plugins.importer;
 
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.errors.InvalidSshKeyException;
 import com.google.gerrit.common.errors.NoSuchAccountException;
 import com.google.gerrit.extensions.api.accounts.AccountInput;
@@ -57,6 +58,7 @@ class AccountUtil {
   private final com.google.gerrit.extensions.api.GerritApi gApi;
   private final VersionedAuthorizedKeys.Accessor authorizedKeys;
   private final CreateAccount.Factory createAccountFactory;
+  private final IdMappingStore idMappingStore;
 
   @Inject
   public AccountUtil(
@@ -65,13 +67,15 @@ class AccountUtil {
       AuthConfig authConfig,
       com.google.gerrit.extensions.api.GerritApi gApi,
       VersionedAuthorizedKeys.Accessor authorizedKeys,
-      CreateAccount.Factory createAccountFactory) {
+      CreateAccount.Factory createAccountFactory,
+      IdMappingStore idMappingStore) {
     this.accountCache = accountCache;
     this.accountManager = accountManager;
     this.authType = authConfig.getAuthType();
     this.gApi = gApi;
     this.authorizedKeys = authorizedKeys;
     this.createAccountFactory = createAccountFactory;
+    this.idMappingStore = idMappingStore;
   }
 
   Account.Id resolveUser(GerritApi api, AccountInfo acc)
@@ -83,14 +87,19 @@ class AccountUtil {
               "User %s <%s> (%s) doesn't have a username and cannot be looked up.",
               acc.name, acc.email, acc._accountId));
     }
-    AccountState a = accountCache.getByUsername(acc.username);
+    AccountState a = getMappedAccount(acc.username);
+    if (a == null) {
+      a = accountCache.getByUsername(acc.username);
+    }
 
     if (a == null) {
+      Account.Id id;
       switch (authType) {
         case HTTP_LDAP:
         case CLIENT_SSL_CERT_LDAP:
         case LDAP:
-          return createAccountByLdapAndAddSshKeys(api, acc);
+          id = createAccountByLdapAndAddSshKeys(api, acc);
+          break;
         case CUSTOM_EXTENSION:
         case DEVELOPMENT_BECOME_ANY_ACCOUNT:
         case HTTP:
@@ -99,8 +108,14 @@ class AccountUtil {
         case OPENID:
         case OPENID_SSO:
         default:
-          return createLocalUser(acc);
+          id = createLocalUser(acc);
+          break;
       }
+      idMappingStore.putAccount(acc.username, id);
+      return id;
+    }
+    if (idMappingStore.getAccount(acc.username) == null) {
+      idMappingStore.putAccount(acc.username, a.getAccount().getId());
     }
     if (!Objects.equals(a.getAccount().getPreferredEmail(), acc.email)) {
       log.warn(
@@ -111,6 +126,30 @@ class AccountUtil {
     return a.getAccount().getId();
   }
 
+  /**
+   * Looks up the account to which the username was resolved by a previous import.
+   *
+   * @return the account, {@code null} if the username was not resolved before or if the account
+   *     no longer has this username
+   */
+  @Nullable
+  private AccountState getMappedAccount(String username) throws IOException {
+    Account.Id id = idMappingStore.getAccount(username);
+    if (id == null) {
+      return null;
+    }
+    AccountState a = accountCache.get(id);
+    return a != null && username.equals(a.getUserName()) ? a : null;
+  }
+
+  /**
+   * @return whether {@link #resolveUser(GerritApi, AccountInfo)} would create a new account for
+   *     the given source account
+   */
+  boolean isMissing(AccountInfo acc) {
+    return acc.username != null && accountCache.getByUsername(acc.username) == null;
+  }
+
   private Account.Id createAccountByLdapAndAddSshKeys(GerritApi api, AccountInfo acc)
       throws NoSuchAccountException, IOException, OrmException, RestApiException,
           ConfigInvalidException {
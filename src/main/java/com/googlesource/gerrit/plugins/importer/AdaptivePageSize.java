@@ -0,0 +1,80 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+/**
+ * Chooses the number of changes that are queried per page.
+ *
+ * <p>The page size is derived from the measured size of the changes in the previous pages, so that
+ * a page neither exceeds the configured maximum page size in bytes nor a fraction of the free heap.
+ * The first page is queried with the minimum page size, since nothing is known about the size of
+ * the changes yet, and the page size is at most doubled from page to page. Pages of small changes
+ * grow up to the configured maximum number of changes.
+ */
+class AdaptivePageSize {
+  /**
+   * The parsed changes take a multiple of their JSON size on the heap, hence a page must only use
+   * a small fraction of the free heap.
+   */
+  private static final int HEAP_FRACTION = 20;
+
+  private final int min;
+  private final int max;
+  private final long maxPageBytes;
+
+  private double bytesPerChange = -1;
+  private int current;
+
+  AdaptivePageSize(int min, int max, long maxPageBytes) {
+    this.min = Math.max(1, Math.min(min, max));
+    this.max = Math.max(this.min, max);
+    this.maxPageBytes = maxPageBytes;
+    this.current = this.min;
+  }
+
+  /** @return the number of changes that should be queried for the next page */
+  int get() {
+    return current;
+  }
+
+  /**
+   * Records the size of a page.
+   *
+   * @param numChanges number of changes in the page
+   * @param bytes size of the page in bytes, negative if unknown
+   */
+  void record(int numChanges, long bytes) {
+    if (numChanges <= 0) {
+      return;
+    }
+    if (bytes < 0) {
+      // the size of the changes is unknown, only the number of changes is limited
+      current = (int) Math.min(max, 2L * current);
+      return;
+    }
+    double pageBytesPerChange = (double) bytes / numChanges;
+    bytesPerChange =
+        bytesPerChange < 0 ? pageBytesPerChange : (bytesPerChange + pageBytesPerChange) / 2;
+
+    long budget = Math.min(maxPageBytes, freeHeap() / HEAP_FRACTION);
+    long size = (long) (budget / Math.max(bytesPerChange, 1));
+    current = (int) Math.max(min, Math.min(Math.min(max, 2L * current), size));
+  }
+
+  private static long freeHeap() {
+    Runtime rt = Runtime.getRuntime();
+    return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory());
+  }
+}
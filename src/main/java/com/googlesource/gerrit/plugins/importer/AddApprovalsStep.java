@@ -44,7 +44,8 @@ import org.slf4j.LoggerFactory;
 class AddApprovalsStep {
 
   interface Factory {
-    AddApprovalsStep create(Change change, ChangeInfo changeInfo, boolean resume);
+    AddApprovalsStep create(
+        Change change, ChangeInfo changeInfo, boolean resume, ReviewDbWriteBuffer writeBuffer);
   }
 
   private static final Logger log = LoggerFactory.getLogger(ReplayInlineCommentsStep.class);
@@ -57,6 +58,7 @@ class AddApprovalsStep {
   private final Change change;
   private final ChangeInfo changeInfo;
   private final boolean resume;
+  private final ReviewDbWriteBuffer writeBuffer;
 
   @Inject
   public AddApprovalsStep(
@@ -67,7 +69,8 @@ class AddApprovalsStep {
       ChangeData.Factory changeDataFactory,
       @Assisted Change change,
       @Assisted ChangeInfo changeInfo,
-      @Assisted boolean resume) {
+      @Assisted boolean resume,
+      @Assisted ReviewDbWriteBuffer writeBuffer) {
     this.accountUtil = accountUtil;
     this.updateFactory = updateFactory;
     this.db = db;
@@ -76,6 +79,7 @@ class AddApprovalsStep {
     this.change = change;
     this.changeInfo = changeInfo;
     this.resume = resume;
+    this.writeBuffer = writeBuffer;
   }
 
   void add(GerritApi api)
@@ -123,6 +127,6 @@ class AddApprovalsStep {
         }
       }
     }
-    db.patchSetApprovals().insert(approvals);
+    writeBuffer.insertApprovals(approvals);
   }
 }
@@ -0,0 +1,258 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.common.ProjectInfo;
+import com.google.gerrit.extensions.common.SshKeyInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.server.OutputFormat;
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the data of a project from a {@link ProjectArchive} instead of querying a source Gerrit
+ * server.
+ *
+ * <p>The changes are streamed from the archive page by page, only the current page and its
+ * comments are held in memory. The archive always contains the details of the changes, hence
+ * {@link #getChange(String, int)} serves the changes of the current page.
+ */
+class ArchiveApi implements GerritApi {
+
+  private final Gson gson = OutputFormat.JSON_COMPACT.newGson();
+  private final File dataFile;
+  private final Map<String, GroupInfo> groups = new HashMap<>();
+  private final Map<Integer, ChangeInfo> changes = new HashMap<>();
+  private final Map<Integer, Map<String, List<CommentInfo>>> comments = new HashMap<>();
+
+  private ProjectArchive.Entry header;
+  private BufferedReader changeReader;
+  private ProjectArchive.Entry pending;
+  private int position;
+  private long lastQueryBytes = -1;
+  private long pendingBytes;
+
+  ArchiveApi(String url) {
+    this.dataFile = ProjectArchive.getDataFile(url);
+  }
+
+  /** @return the canonical web URL of the Gerrit server from which the archive was exported */
+  String getUrl() throws IOException, BadRequestException {
+    return readHeader().url;
+  }
+
+  @Override
+  public ProjectInfo getProject(String projectName) throws BadRequestException, IOException {
+    ProjectInfo project = readHeader().project;
+    if (!project.name.equals(projectName)) {
+      throw new BadRequestException(
+          String.format(
+              "project %s not found in archive %s, the archive contains project %s",
+              projectName, dataFile.getParent(), project.name));
+    }
+    return project;
+  }
+
+  /**
+   * Reads the changes from the archive.
+   *
+   * <p>The query is ignored since archives do not change after they have been exported. On resume
+   * all changes of the archive are returned and unmodified changes are skipped by the replay.
+   */
+  @Override
+  public List<ChangeInfo> queryChanges(
+      String projectName, @Nullable String query, int start, int limit)
+      throws BadRequestException, IOException {
+    getProject(projectName);
+    if (changeReader == null || start < position) {
+      openChanges();
+    }
+    while (position < start && nextChange() != null) {
+      // skip changes before start
+    }
+
+    changes.clear();
+    comments.clear();
+    lastQueryBytes = 0;
+    List<ChangeInfo> result = new ArrayList<>();
+    ProjectArchive.Entry e;
+    while ((limit <= 0 || result.size() < limit) && (e = nextChange()) != null) {
+      lastQueryBytes += pendingBytes;
+      e.change._moreChanges = null;
+      result.add(e.change);
+      changes.put(e.change._number, e.change);
+      comments.put(
+          e.change._number,
+          e.comments != null ? e.comments : Collections.<String, List<CommentInfo>>emptyMap());
+    }
+    if (!result.isEmpty() && peekChange() != null) {
+      result.get(result.size() - 1)._moreChanges = true;
+    }
+    if (peekChange() == null) {
+      closeChanges();
+    }
+    return result;
+  }
+
+  @Override
+  public List<ChangeInfo> queryChangeSummaries(
+      String projectName, @Nullable String query, int start, int limit)
+      throws BadRequestException, IOException {
+    return queryChanges(projectName, query, start, limit);
+  }
+
+  @Override
+  public ChangeInfo getChange(String projectName, int changeId)
+      throws BadRequestException, IOException {
+    getProject(projectName);
+    return changes.get(changeId);
+  }
+
+  @Override
+  public long getLastQueryBytes() {
+    return lastQueryBytes;
+  }
+
+  @Override
+  public Long getRepositorySize(String projectName) throws BadRequestException, IOException {
+    getProject(projectName);
+    return new File(dataFile.getParentFile(), ProjectArchive.BUNDLE_FILE).length();
+  }
+
+  @Override
+  public GroupInfo getGroup(String groupName) throws BadRequestException, IOException {
+    readHeader();
+    GroupInfo group = groups.get(groupName);
+    if (group == null) {
+      throw new BadRequestException(
+          String.format("group %s not found in archive %s", groupName, dataFile.getParent()));
+    }
+    return group;
+  }
+
+  @Override
+  public Iterable<CommentInfo> getComments(int changeId, String rev) {
+    Map<String, List<CommentInfo>> byRevision = comments.get(changeId);
+    if (byRevision == null) {
+      return null;
+    }
+    List<CommentInfo> result = byRevision.get(rev);
+    if (result == null) {
+      return null;
+    }
+    return new ArrayList<>(result);
+  }
+
+  @Override
+  public List<SshKeyInfo> getSshKeys(String userId) {
+    // SSH keys are not exported
+    return Collections.emptyList();
+  }
+
+  @Override
+  public Version getVersion() throws BadRequestException, IOException {
+    return new Version(readHeader().version);
+  }
+
+  private ProjectArchive.Entry readHeader() throws IOException, BadRequestException {
+    if (header != null) {
+      return header;
+    }
+    if (!dataFile.isFile()) {
+      throw new BadRequestException(
+          String.format("%s is not a project archive", dataFile.getParent()));
+    }
+    try (BufferedReader r = newReader()) {
+      String line = r.readLine();
+      ProjectArchive.Entry h = line != null ? parse(line) : null;
+      if (h == null || h.project == null) {
+        throw new BadRequestException(
+            String.format("project archive %s has no header", dataFile.getParent()));
+      }
+      while ((line = r.readLine()) != null) {
+        ProjectArchive.Entry e = parse(line);
+        if (e.group == null) {
+          break;
+        }
+        groups.put(e.group.id, e.group);
+        groups.put(e.group.name, e.group);
+      }
+      header = h;
+    }
+    return header;
+  }
+
+  private void openChanges() throws IOException {
+    closeChanges();
+    changeReader = newReader();
+    position = 0;
+    pending = null;
+  }
+
+  private void closeChanges() throws IOException {
+    if (changeReader != null) {
+      changeReader.close();
+      changeReader = null;
+    }
+    pending = null;
+  }
+
+  private ProjectArchive.Entry nextChange() throws IOException {
+    ProjectArchive.Entry e = peekChange();
+    if (e != null) {
+      pending = null;
+      position++;
+    }
+    return e;
+  }
+
+  private ProjectArchive.Entry peekChange() throws IOException {
+    if (pending == null && changeReader != null) {
+      String line;
+      while ((line = changeReader.readLine()) != null) {
+        ProjectArchive.Entry e = parse(line);
+        if (e.change != null) {
+          pending = e;
+          pendingBytes = line.length();
+          break;
+        }
+      }
+    }
+    return pending;
+  }
+
+  private ProjectArchive.Entry parse(String line) {
+    return gson.fromJson(line, ProjectArchive.Entry.class);
+  }
+
+  private BufferedReader newReader() throws IOException {
+    return new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), UTF_8));
+  }
+}
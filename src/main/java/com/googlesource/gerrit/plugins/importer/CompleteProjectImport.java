@@ -24,11 +24,13 @@ import com.google.gerrit.extensions.restapi.ResourceConflictException;
 import com.google.gerrit.extensions.restapi.ResourceNotFoundException;
 import com.google.gerrit.extensions.restapi.Response;
 import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.extensions.restapi.Url;
 import com.google.gerrit.extensions.webui.UiAction;
 import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.config.ConfigResource;
 import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.git.WorkQueue;
 import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.project.ProjectResource;
 import com.google.inject.Inject;
@@ -38,37 +40,73 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
 import org.eclipse.jgit.internal.storage.file.LockFile;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @RequiresCapability(ImportCapability.ID)
 class CompleteProjectImport implements RestModifyView<ImportProjectResource, Input> {
-  public static class Input {}
+  public static class Input {
+    public boolean async;
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(CompleteProjectImport.class);
 
   private final ProjectsCollection projects;
+  private final ImportStatusIndex importStatusIndex;
   private final GitRepositoryManager repoManager;
+  private final WorkQueue workQueue;
+  private final String pluginName;
 
   @Inject
-  CompleteProjectImport(ProjectsCollection projects, GitRepositoryManager repoManager) {
+  CompleteProjectImport(
+      ProjectsCollection projects,
+      ImportStatusIndex importStatusIndex,
+      GitRepositoryManager repoManager,
+      WorkQueue workQueue,
+      @PluginName String pluginName) {
     this.projects = projects;
+    this.importStatusIndex = importStatusIndex;
     this.repoManager = repoManager;
+    this.workQueue = workQueue;
+    this.pluginName = pluginName;
   }
 
   @Override
-  public Response<?> apply(ImportProjectResource rsrc, Input input)
+  public Object apply(ImportProjectResource rsrc, Input input)
       throws ResourceConflictException, RepositoryNotFoundException, IOException {
     LockFile lock = lockForDelete(rsrc.getName());
+    if (input != null && input.async) {
+      // the lock is released by the task
+      workQueue.getDefaultQueue().submit(new CompleteTask(rsrc, lock));
+      return Response.accepted(
+          "/config/server/" + pluginName + "~projects/" + Url.encode(rsrc.getName().get()));
+    }
     try {
-      deleteImportRefs(rsrc.getName());
-      rsrc.getImportStatus().delete();
+      complete(rsrc, NullProgressMonitor.INSTANCE);
       return Response.none();
     } finally {
       lock.unlock();
     }
   }
 
+  private void complete(ImportProjectResource rsrc, ProgressMonitor pm)
+      throws RepositoryNotFoundException, IOException {
+    deleteImportRefs(rsrc.getName(), pm);
+    rsrc.getImportStatus().delete();
+    importStatusIndex.remove(rsrc.getName());
+  }
+
   private LockFile lockForDelete(Project.NameKey project) throws ResourceConflictException {
     File importStatus = projects.FS_LAYOUT.getImportStatusFile(project.get());
     LockFile lockFile = new LockFile(importStatus);
@@ -82,33 +120,107 @@ class CompleteProjectImport implements RestModifyView<ImportProjectResource, Inp
     }
   }
 
-  private void deleteImportRefs(Project.NameKey project)
+  /**
+   * Deletes all refs under {@link ConfigureRepositoryStep#R_IMPORTS} in a single batch and packs
+   * the remaining refs afterwards so that reading the refs is fast again.
+   */
+  private void deleteImportRefs(Project.NameKey project, ProgressMonitor pm)
       throws RepositoryNotFoundException, IOException {
     try (Repository repo = repoManager.openRepository(project)) {
       Map<String, Ref> refs = repo.getRefDatabase().getRefs(ConfigureRepositoryStep.R_IMPORTS);
+      if (refs.isEmpty()) {
+        return;
+      }
+      BatchRefUpdate bru = repo.getRefDatabase().newBatchUpdate();
+      bru.setAllowNonFastForwards(true);
       for (Ref ref : refs.values()) {
-        RefUpdate ru = repo.updateRef(ref.getName());
-        ru.setForceUpdate(true);
-        RefUpdate.Result result = ru.delete();
-        switch (result) {
-          case NEW:
-          case NO_CHANGE:
-          case FAST_FORWARD:
-          case FORCED:
-            break;
-          case IO_FAILURE:
-          case LOCK_FAILURE:
-          case NOT_ATTEMPTED:
-          case REJECTED:
-          case REJECTED_CURRENT_BRANCH:
-          case RENAMED:
-          case REJECTED_MISSING_OBJECT:
-          case REJECTED_OTHER_REASON:
-          default:
-            throw new IOException(
-                String.format("Failed to delete %s, RefUpdate.Result = %s", ref, result));
+        bru.addCommand(
+            new ReceiveCommand(
+                ref.getObjectId() != null ? ref.getObjectId() : ObjectId.zeroId(),
+                ObjectId.zeroId(),
+                ref.getName(),
+                ReceiveCommand.Type.DELETE));
+      }
+      try (RevWalk rw = new RevWalk(repo)) {
+        bru.execute(rw, pm);
+      }
+      for (ReceiveCommand cmd : bru.getCommands()) {
+        if (cmd.getResult() != ReceiveCommand.Result.OK) {
+          throw new IOException(
+              String.format(
+                  "Failed to delete %s, ReceiveCommand.Result = %s",
+                  cmd.getRefName(), cmd.getResult()));
         }
       }
+
+      if (repo instanceof FileRepository) {
+        pm.beginTask("Pack refs", 1);
+        new GC((FileRepository) repo).packRefs();
+        pm.update(1);
+        pm.endTask();
+      }
+    }
+  }
+
+  private class CompleteTask implements Runnable {
+    private final ImportProjectResource rsrc;
+    private final LockFile lock;
+    private final CountingProgressMonitor pm = new CountingProgressMonitor();
+
+    CompleteTask(ImportProjectResource rsrc, LockFile lock) {
+      this.rsrc = rsrc;
+      this.lock = lock;
+    }
+
+    @Override
+    public void run() {
+      try {
+        complete(rsrc, pm);
+      } catch (IOException e) {
+        log.error(String.format("Failed to complete import of project %s", rsrc.getName()), e);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format("[%s] Complete import of %s: %s", pluginName, rsrc.getName(), pm);
+    }
+  }
+
+  /** Keeps track of the progress of a background task so that it can be shown in the queue. */
+  private static class CountingProgressMonitor implements ProgressMonitor {
+    private volatile String task = "Waiting";
+    private volatile int total;
+    private volatile int done;
+
+    @Override
+    public void start(int totalTasks) {}
+
+    @Override
+    public void beginTask(String title, int totalWork) {
+      task = title;
+      total = totalWork;
+      done = 0;
+    }
+
+    @Override
+    public void update(int completed) {
+      done += completed;
+    }
+
+    @Override
+    public void endTask() {}
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return total > 0 ? String.format("%s (%d/%d)", task, done, total) : task;
     }
   }
 
@@ -135,7 +247,7 @@ class CompleteProjectImport implements RestModifyView<ImportProjectResource, Inp
     }
 
     @Override
-    public Response<?> apply(ProjectResource rsrc, Input input)
+    public Object apply(ProjectResource rsrc, Input input)
         throws ResourceNotFoundException, ResourceConflictException, RepositoryNotFoundException,
             IOException {
       ImportProjectResource projectResource =
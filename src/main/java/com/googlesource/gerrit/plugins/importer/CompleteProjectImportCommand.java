@@ -22,6 +22,7 @@ import com.google.inject.Inject;
 import java.io.IOException;
 import org.eclipse.jgit.errors.RepositoryNotFoundException;
 import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
 
 @RequiresCapability(ImportCapability.ID)
 @CommandMetaData(name = "complete-project", description = "Completes project import")
@@ -34,6 +35,9 @@ class CompleteProjectImportCommand extends SshCommand {
       usage = "name of the project in target system")
   private String project;
 
+  @Option(name = "--async", usage = "complete the import in the background")
+  private boolean async;
+
   @Inject private CompleteProjectImport completeProjectImport;
 
   @Inject private ProjectsCollection projects;
@@ -42,7 +46,9 @@ class CompleteProjectImportCommand extends SshCommand {
   protected void run() throws UnloggedFailure, RepositoryNotFoundException, IOException {
     try {
       ImportProjectResource rsrc = projects.parse(project);
-      completeProjectImport.apply(rsrc, new CompleteProjectImport.Input());
+      CompleteProjectImport.Input input = new CompleteProjectImport.Input();
+      input.async = async;
+      completeProjectImport.apply(rsrc, input);
     } catch (RestApiException e) {
       throw die(e.getMessage());
     }
@@ -16,6 +16,7 @@ package com.googlesource.gerrit.plugins.importer;
 
 import static com.googlesource.gerrit.plugins.importer.ProgressMonitorUtil.updateAndEnd;
 
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.config.GerritServerConfig;
 import com.google.gerrit.server.config.SitePaths;
@@ -44,15 +45,25 @@ class ConfigureRepositoryStep {
       throws IOException {
     pm.beginTask("Configure repository", 1);
     StoredConfig config = repo.getConfig();
-    if (originUrl != null) {
-      config.setString("remote", "origin", "url", originUrl.concat("/a/").concat(name.get()));
-    } else {
-      config.setString(
-          "remote", "origin", "url", this.gitDir.resolve(name.get() + ".git").toString());
-    }
+    config.setString("remote", "origin", "url", getRemoteUrl(name, originUrl));
     config.setString("remote", "origin", "fetch", "+refs/*:" + R_IMPORTS + "*");
     config.setString("http", null, "sslVerify", Boolean.FALSE.toString());
     config.save();
     updateAndEnd(pm);
   }
+
+  /**
+   * @param name the name of the project in the source system
+   * @param originUrl the URL of the source Gerrit server or project archive, {@code null} for a
+   *     project copy
+   * @return the URL of the repository from which the project is fetched
+   */
+  String getRemoteUrl(Project.NameKey name, @Nullable String originUrl) {
+    if (ProjectArchive.isArchive(originUrl)) {
+      return ProjectArchive.getBundleFile(originUrl).getAbsolutePath();
+    } else if (originUrl != null) {
+      return originUrl.concat("/a/").concat(name.get());
+    }
+    return gitDir.resolve(name.get() + ".git").toString();
+  }
 }
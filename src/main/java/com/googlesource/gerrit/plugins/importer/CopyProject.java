@@ -27,7 +27,6 @@ import com.google.gerrit.extensions.restapi.RestModifyView;
 import com.google.gerrit.extensions.webui.UiAction;
 import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.CurrentUser;
-import com.google.gerrit.server.config.ConfigResource;
 import com.google.gerrit.server.patch.PatchListNotAvailableException;
 import com.google.gerrit.server.permissions.PermissionBackend;
 import com.google.gerrit.server.permissions.PermissionBackendException;
@@ -85,7 +84,7 @@ class CopyProject implements RestModifyView<ProjectResource, Input>, UiAction<Pr
         .create(new Project.NameKey(input.name))
         .setCopy(true)
         .setErr(err)
-        .apply(new ConfigResource(), in);
+        .importProject(in);
   }
 
   @Override
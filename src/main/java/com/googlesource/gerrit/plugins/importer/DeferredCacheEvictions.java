@@ -0,0 +1,54 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import com.google.gerrit.server.account.AccountCache;
+import com.google.gerrit.server.account.GroupIncludeCache;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Cache evictions that are deferred until the end of a group import.
+ *
+ * <p>The evictions are collected for a group and all owner and included groups that are imported
+ * with it, so that every account and every group is evicted only once, even if it is a member of
+ * many imported groups. It is not thread-safe.
+ */
+class DeferredCacheEvictions {
+  private final Set<Account.Id> accounts = new HashSet<>();
+  private final Set<AccountGroup.UUID> includedGroups = new HashSet<>();
+
+  void evictAccounts(Set<Account.Id> ids) {
+    accounts.addAll(ids);
+  }
+
+  void evictParentGroupsOf(AccountGroup.UUID uuid) {
+    includedGroups.add(uuid);
+  }
+
+  void flush(AccountCache accountCache, GroupIncludeCache groupIncludeCache) throws IOException {
+    for (Account.Id id : accounts) {
+      accountCache.evict(id);
+    }
+    accounts.clear();
+    for (AccountGroup.UUID uuid : includedGroups) {
+      groupIncludeCache.evictParentGroupsOf(uuid);
+    }
+    includedGroups.clear();
+  }
+}
@@ -0,0 +1,213 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.common.collect.Iterables;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.common.AccountInfo;
+import com.google.gerrit.extensions.common.ApprovalInfo;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.ChangeMessageInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.common.LabelInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gwtorm.server.OrmException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the size of a project import without writing anything.
+ *
+ * <p>All changes are queried from the source and counted. The inline comments are only retrieved
+ * for a sample of the changes and extrapolated for the other changes. The time that is needed to
+ * retrieve the sampled changes is used to project the duration of the import. The time of writing
+ * the changes in the target system is projected from the {@link ReplayRate} of earlier imports.
+ */
+@Singleton
+class DryRunStep {
+  private static Logger log = LoggerFactory.getLogger(DryRunStep.class);
+
+  /** Number of changes for which the inline comments are retrieved. */
+  private static final int SAMPLE_SIZE = 20;
+
+  private final ConfigureRepositoryStep configRepoStep;
+  private final AccountUtil accountUtil;
+  private final ReplayRate replayRate;
+
+  @Inject
+  DryRunStep(
+      ConfigureRepositoryStep configRepoStep, AccountUtil accountUtil, ReplayRate replayRate) {
+    this.configRepoStep = configRepoStep;
+    this.accountUtil = accountUtil;
+    this.replayRate = replayRate;
+  }
+
+  DryRunStatistic run(
+      GerritApi api,
+      ImportProject.Input input,
+      Project.NameKey srcProject,
+      @Nullable String query,
+      ProgressMonitor pm)
+      throws IOException, BadRequestException, OrmException {
+    DryRunStatistic statistic = new DryRunStatistic();
+    Set<String> accounts = new HashSet<>();
+    ImportFilter filter = input.filter;
+    long queryNanos = 0;
+    long queryBytes = 0;
+    long sampleNanos = 0;
+    int sampledRevisions = 0;
+    int sampledComments = 0;
+
+    pm.beginTask("Query changes", ProgressMonitor.UNKNOWN);
+    int start = 0;
+    for (; ; ) {
+      long queryStart = System.nanoTime();
+      List<ChangeInfo> changes =
+          api.queryChanges(
+              srcProject.get(), query, start, GlobalCapability.DEFAULT_MAX_QUERY_LIMIT);
+      queryNanos += System.nanoTime() - queryStart;
+      if (changes.isEmpty()) {
+        break;
+      }
+      queryBytes += Math.max(api.getLastQueryBytes(), 0);
+      start += changes.size();
+      for (ChangeInfo c : changes) {
+        if (filter != null) {
+          if (!filter.matches(c)) {
+            continue;
+          }
+          filter.trimRevisions(c);
+        }
+        count(c, statistic, accounts);
+        if (statistic.numSampledChanges < SAMPLE_SIZE) {
+          long sampleStart = System.nanoTime();
+          sampledComments += countComments(api, c);
+          sampleNanos += System.nanoTime() - sampleStart;
+          sampledRevisions += c.revisions.size();
+          statistic.numSampledChanges++;
+        }
+        pm.update(1);
+      }
+      if (!Boolean.TRUE.equals(changes.get(changes.size() - 1)._moreChanges)) {
+        break;
+      }
+    }
+    pm.endTask();
+
+    statistic.numComments =
+        sampledRevisions > 0
+            ? (int) ((long) sampledComments * statistic.numRevisions / sampledRevisions)
+            : 0;
+    statistic.numRefs =
+        countRefs(configRepoStep.getRemoteUrl(srcProject, input.from), input.user, input.pass);
+    statistic.packSizeBytes = api.getRepositorySize(srcProject.get());
+
+    long durationNanos = queryNanos;
+    if (statistic.numSampledChanges > 0) {
+      durationNanos += sampleNanos / statistic.numSampledChanges * statistic.numChanges;
+    }
+    if (statistic.packSizeBytes != null && queryBytes > 0) {
+      // assume that the fetch has the same throughput as the change query
+      durationNanos += (long) ((double) statistic.packSizeBytes / queryBytes * queryNanos);
+    }
+    Long nanosPerChange = replayRate.getNanosPerChange();
+    if (nanosPerChange != null) {
+      long writeNanos = nanosPerChange * statistic.numChanges;
+      statistic.estimatedWriteDurationMs = TimeUnit.NANOSECONDS.toMillis(writeNanos);
+      durationNanos += writeNanos;
+    }
+    statistic.estimatedDurationMs = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    return statistic;
+  }
+
+  private void count(ChangeInfo c, DryRunStatistic statistic, Set<String> accounts) {
+    statistic.numChanges++;
+    statistic.numRevisions += c.revisions.size();
+    countAccount(c.owner, statistic, accounts);
+    for (RevisionInfo r : c.revisions.values()) {
+      countAccount(r.uploader, statistic, accounts);
+    }
+    if (c.messages != null) {
+      statistic.numMessages += c.messages.size();
+      for (ChangeMessageInfo m : c.messages) {
+        countAccount(m.author, statistic, accounts);
+      }
+    }
+    if (c.labels != null) {
+      for (LabelInfo label : c.labels.values()) {
+        if (label.all != null) {
+          for (ApprovalInfo a : label.all) {
+            if (a.value != null && a.value != 0) {
+              statistic.numApprovals++;
+            }
+            countAccount(a, statistic, accounts);
+          }
+        }
+      }
+    }
+  }
+
+  private void countAccount(
+      @Nullable AccountInfo acc, DryRunStatistic statistic, Set<String> accounts) {
+    if (acc == null || acc.username == null || !accounts.add(acc.username)) {
+      return;
+    }
+    if (accountUtil.isMissing(acc)) {
+      statistic.numAccountsToCreate++;
+    }
+  }
+
+  private static int countComments(GerritApi api, ChangeInfo c)
+      throws IOException, BadRequestException, OrmException {
+    int count = 0;
+    for (Map.Entry<String, RevisionInfo> e : c.revisions.entrySet()) {
+      Iterable<CommentInfo> comments = api.getComments(c._number, e.getKey());
+      if (comments != null) {
+        count += Iterables.size(comments);
+      }
+    }
+    return count;
+  }
+
+  @Nullable
+  private static Integer countRefs(String url, @Nullable String user, @Nullable String pass) {
+    LsRemoteCommand lsRemote = Git.lsRemoteRepository().setRemote(url);
+    if (user != null) {
+      lsRemote.setCredentialsProvider(new UsernamePasswordCredentialsProvider(user, pass));
+    }
+    try {
+      return lsRemote.call().size();
+    } catch (GitAPIException e) {
+      log.warn(String.format("Failed to list the refs of %s", url), e);
+      return null;
+    }
+  }
+}
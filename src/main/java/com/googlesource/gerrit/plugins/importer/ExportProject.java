@@ -0,0 +1,245 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import static com.google.gerrit.reviewdb.client.AccountGroup.isInternalGroup;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Strings;
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.extensions.restapi.RestModifyView;
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import com.google.gerrit.server.OutputFormat;
+import com.google.gerrit.server.config.CanonicalWebUrl;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.gerrit.server.project.ProjectCache;
+import com.google.gerrit.server.project.ProjectResource;
+import com.google.gson.Gson;
+import com.google.gwtorm.server.OrmException;
+import com.google.inject.Inject;
+import com.googlesource.gerrit.plugins.importer.ExportProject.Input;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TextProgressMonitor;
+import org.eclipse.jgit.transport.BundleWriter;
+import org.eclipse.jgit.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@RequiresCapability(ImportCapability.ID)
+class ExportProject implements RestModifyView<ProjectResource, Input> {
+  private static Logger log = LoggerFactory.getLogger(ExportProject.class);
+
+  public static class Input {
+    public String to;
+  }
+
+  static class ExportStatistic {
+    int numChangesExported;
+    int numGroupsExported;
+  }
+
+  private final GitRepositoryManager repoManager;
+  private final ProjectCache projectCache;
+  private final LocalApi localApi;
+  private final String canonicalWebUrl;
+  private final Gson gson = OutputFormat.JSON_COMPACT.newGson();
+
+  private Writer err;
+
+  @Inject
+  ExportProject(
+      GitRepositoryManager repoManager,
+      ProjectCache projectCache,
+      LocalApi localApi,
+      @CanonicalWebUrl String canonicalWebUrl) {
+    this.repoManager = repoManager;
+    this.projectCache = projectCache;
+    this.localApi = localApi;
+    this.canonicalWebUrl = canonicalWebUrl;
+  }
+
+  ExportProject setErr(Writer err) {
+    this.err = err;
+    return this;
+  }
+
+  @Override
+  public ExportStatistic apply(ProjectResource rsrc, Input input)
+      throws RestApiException, IOException, OrmException {
+    if (input == null || Strings.isNullOrEmpty(input.to)) {
+      throw new BadRequestException("to is required");
+    }
+    File dir = new File(input.to);
+    if (dir.exists()) {
+      throw new ResourceConflictException(String.format("%s already exists", input.to));
+    }
+    if (!dir.mkdirs()) {
+      throw new IOException(String.format("Cannot create directory %s", input.to));
+    }
+
+    try {
+      return export(rsrc, dir);
+    } catch (Exception e) {
+      // a partial archive must not be imported
+      delete(dir);
+      throw e;
+    }
+  }
+
+  private ExportStatistic export(ProjectResource rsrc, File dir)
+      throws RestApiException, IOException, OrmException {
+    ProgressMonitor pm = err != null ? new TextProgressMonitor(err) : NullProgressMonitor.INSTANCE;
+    ExportStatistic statistic = new ExportStatistic();
+    try (Writer data =
+        new BufferedWriter(
+            new OutputStreamWriter(
+                new FileOutputStream(new File(dir, ProjectArchive.DATA_FILE)), UTF_8))) {
+      ProjectArchive.Entry header = new ProjectArchive.Entry();
+      header.version = localApi.getVersion().formatted;
+      header.url = canonicalWebUrl;
+      header.project = localApi.getProject(rsrc.getName());
+      write(data, header);
+      statistic.numGroupsExported = exportGroups(rsrc, data, pm);
+      statistic.numChangesExported = exportChanges(rsrc, data, pm);
+    }
+    exportRepository(rsrc, new File(dir, ProjectArchive.BUNDLE_FILE), pm);
+    return statistic;
+  }
+
+  private static void delete(File dir) {
+    try {
+      FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.IGNORE_ERRORS);
+    } catch (IOException e) {
+      log.warn(String.format("Failed to delete partial project archive %s", dir), e);
+    }
+  }
+
+  private int exportGroups(ProjectResource rsrc, Writer data, ProgressMonitor pm)
+      throws IOException, OrmException, BadRequestException {
+    Deque<AccountGroup.UUID> todo =
+        new ArrayDeque<>(
+            projectCache.get(rsrc.getNameKey()).getConfig().getAllGroupUUIDs());
+    Set<AccountGroup.UUID> seen = new HashSet<>();
+    int count = 0;
+    pm.beginTask("Export Groups", ProgressMonitor.UNKNOWN);
+    while (!todo.isEmpty()) {
+      AccountGroup.UUID uuid = todo.poll();
+      if (!isInternalGroup(uuid) || !seen.add(uuid)) {
+        continue;
+      }
+      GroupInfo group = localApi.getGroup(uuid.get());
+      ProjectArchive.Entry e = new ProjectArchive.Entry();
+      e.group = group;
+      write(data, e);
+      count++;
+      pm.update(1);
+
+      if (group.ownerId != null) {
+        todo.add(new AccountGroup.UUID(group.ownerId));
+      }
+      if (group.includes != null) {
+        for (GroupInfo include : group.includes) {
+          todo.add(new AccountGroup.UUID(include.id));
+        }
+      }
+    }
+    pm.endTask();
+    return count;
+  }
+
+  private int exportChanges(ProjectResource rsrc, Writer data, ProgressMonitor pm)
+      throws IOException, OrmException, BadRequestException {
+    int start = 0;
+    int limit = GlobalCapability.DEFAULT_MAX_QUERY_LIMIT;
+    pm.beginTask("Export Changes", ProgressMonitor.UNKNOWN);
+    for (; ; ) {
+      List<ChangeInfo> changes = localApi.queryChanges(rsrc.getName(), null, start, limit);
+      if (changes.isEmpty()) {
+        break;
+      }
+      start += changes.size();
+      for (ChangeInfo c : changes) {
+        ProjectArchive.Entry e = new ProjectArchive.Entry();
+        e.change = c;
+        e.comments = new LinkedHashMap<>();
+        for (String rev : c.revisions.keySet()) {
+          Iterable<CommentInfo> comments = localApi.getComments(c._number, rev);
+          if (comments != null) {
+            List<CommentInfo> list = new ArrayList<>();
+            comments.forEach(list::add);
+            e.comments.put(rev, list);
+          }
+        }
+        write(data, e);
+        pm.update(1);
+      }
+      if (!Boolean.TRUE.equals(changes.get(changes.size() - 1)._moreChanges)) {
+        break;
+      }
+    }
+    pm.endTask();
+    return start;
+  }
+
+  private void exportRepository(ProjectResource rsrc, File bundle, ProgressMonitor pm)
+      throws IOException {
+    try (Repository repo = repoManager.openRepository(rsrc.getNameKey());
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(bundle))) {
+      BundleWriter bw = new BundleWriter(repo);
+      for (Map.Entry<String, Ref> e : repo.getRefDatabase().getRefs(RefDatabase.ALL).entrySet()) {
+        Ref ref = e.getValue();
+        if (ref.isSymbolic()
+            || ref.getObjectId() == null
+            || ref.getName().startsWith(ConfigureRepositoryStep.R_IMPORTS)) {
+          continue;
+        }
+        bw.include(ref.getName(), ref.getObjectId());
+      }
+      bw.writeBundle(pm, out);
+    }
+  }
+
+  private void write(Writer data, ProjectArchive.Entry e) throws IOException {
+    gson.toJson(e, data);
+    data.write('\n');
+  }
+}
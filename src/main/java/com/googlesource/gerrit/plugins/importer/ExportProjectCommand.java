@@ -0,0 +1,65 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.restapi.RestApiException;
+import com.google.gerrit.server.project.ProjectResource;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.gerrit.sshd.SshCommand;
+import com.google.inject.Inject;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+@RequiresCapability(ImportCapability.ID)
+@CommandMetaData(name = "export-project", description = "Exports a project into an archive")
+public class ExportProjectCommand extends SshCommand {
+
+  @Option(
+      name = "--to",
+      aliases = {"-t"},
+      required = true,
+      metaVar = "DIR",
+      usage = "directory on the server to which the project archive should be written")
+  private String to;
+
+  @Option(name = "--quiet", usage = "suppress progress messages")
+  private boolean quiet;
+
+  @Argument(index = 0, required = true, metaVar = "NAME", usage = "name of the project")
+  private String project;
+
+  // Gerrit's project collection, not the collection of imported projects of this plugin
+  @Inject private com.google.gerrit.server.project.ProjectsCollection projects;
+
+  @Inject private ExportProject export;
+
+  @Override
+  protected void run() throws UnloggedFailure, Failure, Exception {
+    try {
+      ProjectResource rsrc = projects.parse(project);
+      if (!quiet) {
+        export.setErr(stderr);
+      }
+      ExportProject.Input input = new ExportProject.Input();
+      input.to = to;
+      ExportProject.ExportStatistic stats = export.apply(rsrc, input);
+      stdout.print("Exported Changes: " + stats.numChangesExported + "\n");
+      stdout.print("Exported Groups: " + stats.numGroupsExported + "\n");
+    } catch (RestApiException e) {
+      throw die(e.getMessage());
+    }
+  }
+}
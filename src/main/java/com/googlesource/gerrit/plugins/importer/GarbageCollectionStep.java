@@ -0,0 +1,69 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.internal.storage.file.GC;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackConfig;
+
+/**
+ * Runs a garbage collection on the imported repository.
+ *
+ * <p>After an import the repository contains the fetched (or linked) packs and many loose refs.
+ * Repacking with bitmaps and packing the refs makes clones and fetches fast right away, instead of
+ * only after the next scheduled gc. The step is only done if it is enabled by the {@code
+ * plugin.@PLUGIN@.gcAfterImport} option in {@code gerrit.config}.
+ */
+@Singleton
+class GarbageCollectionStep {
+  private final PluginConfigFactory cfgFactory;
+  private final String pluginName;
+
+  @Inject
+  GarbageCollectionStep(PluginConfigFactory cfgFactory, @PluginName String pluginName) {
+    this.cfgFactory = cfgFactory;
+    this.pluginName = pluginName;
+  }
+
+  void gc(Repository repo, ImportStatistic statistic, ProgressMonitor pm) throws IOException {
+    if (!cfgFactory.getFromGerritConfig(pluginName).getBoolean("gcAfterImport", false)
+        || !(repo instanceof FileRepository)) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    GC gc = new GC((FileRepository) repo);
+    PackConfig packConfig = new PackConfig(repo);
+    packConfig.setBuildBitmaps(true);
+    gc.setPackConfig(packConfig);
+    gc.setProgressMonitor(pm);
+    try {
+      gc.gc();
+    } catch (ParseException e) {
+      throw new IOException("Invalid gc.pruneExpire configuration", e);
+    }
+    statistic.gcTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    statistic.gcPackSizeBytes = gc.getStatistics().sizeOfPackedObjects;
+  }
+}
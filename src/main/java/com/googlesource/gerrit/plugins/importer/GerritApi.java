@@ -15,6 +15,7 @@
 package com.googlesource.gerrit.plugins.importer;
 
 import com.google.common.base.Objects;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.common.CommentInfo;
 import com.google.gerrit.extensions.common.GroupInfo;
@@ -43,15 +44,75 @@ interface GerritApi {
       if (url == null) {
         return localApi;
       }
+      if (ProjectArchive.isArchive(url)) {
+        return new ArchiveApi(url);
+      }
       return new RemoteApi(url, user, pass);
     }
   }
 
   public ProjectInfo getProject(String projectName) throws BadRequestException, IOException;
 
-  public List<ChangeInfo> queryChanges(String projectName, int start, int limit)
+  /**
+   * Queries the changes of a project.
+   *
+   * @param projectName the name of the project
+   * @param query additional query operators that the changes must match (e.g. {@code
+   *     after:"2018-01-01 10:00:00.000 +0000"}), {@code null} to query all changes of the project
+   * @param start number of changes to skip
+   * @param limit maximum number of changes to return, {@code 0} for the server default
+   * @return the changes, if there are more changes the last change has {@code _moreChanges} set
+   * @throws IOException thrown if sending the request fails
+   * @throws BadRequestException thrown if the query fails
+   */
+  public List<ChangeInfo> queryChanges(
+      String projectName, @Nullable String query, int start, int limit)
+      throws BadRequestException, IOException;
+
+  /**
+   * Queries the changes of a project without details.
+   *
+   * <p>Only the IDs, the owner account ID, the branch, the status, the timestamps and the number,
+   * ref and revision of the patch sets are populated. This is enough to decide whether a change
+   * must be replayed and which refs must be fetched, the details of the changes that are replayed
+   * are then retrieved by {@link #getChange(String, int)}.
+   *
+   * @see #queryChanges(String, String, int, int)
+   */
+  public List<ChangeInfo> queryChangeSummaries(
+      String projectName, @Nullable String query, int start, int limit)
+      throws BadRequestException, IOException;
+
+  /**
+   * Retrieves a change with the same details as {@link #queryChanges(String, String, int, int)}.
+   *
+   * @param projectName the name of the project
+   * @param changeId numeric change ID
+   * @return the change, {@code null} if the change does not exist
+   * @throws IOException thrown if sending the request fails
+   * @throws BadRequestException thrown if the query fails
+   */
+  @Nullable
+  public ChangeInfo getChange(String projectName, int changeId)
       throws BadRequestException, IOException;
 
+  /**
+   * @return the size of the response of the last change query in bytes, {@code -1} if the size is
+   *     unknown
+   */
+  public long getLastQueryBytes();
+
+  /**
+   * Retrieves the size of the repository of a project.
+   *
+   * @param projectName the name of the project
+   * @return the size of the loose and packed objects in bytes, {@code null} if the size is not
+   *     available (e.g. if the user is not allowed to see the repository statistics)
+   * @throws IOException thrown if sending the request or reading the repository fails
+   */
+  @Nullable
+  public Long getRepositorySize(String projectName) throws BadRequestException, IOException;
+
   public GroupInfo getGroup(String groupName) throws BadRequestException, IOException, OrmException;
 
   /**
@@ -74,6 +135,9 @@ interface GerritApi {
   public Version getVersion() throws BadRequestException, IOException;
 
   class Version implements Comparable<Version> {
+    private static final Pattern PATTERN =
+        Pattern.compile("(\\d+)\\.(\\d+)(\\.(\\d+))?(\\.(\\d+))?(-(.+))?");
+
     final String formatted;
     final Integer major;
     final Integer minor;
@@ -84,8 +148,7 @@ interface GerritApi {
     Version(String formatted) {
       this.formatted = formatted;
 
-      Matcher m =
-          Pattern.compile("(\\d+)\\.(\\d+)(\\.(\\d+))?(\\.(\\d+))?(-(.+))?").matcher(formatted);
+      Matcher m = PATTERN.matcher(formatted);
       if (m.matches()) {
         this.major = Integer.parseInt(m.group(1));
         this.minor = Integer.parseInt(m.group(2));
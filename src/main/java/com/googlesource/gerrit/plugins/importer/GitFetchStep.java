@@ -16,38 +16,135 @@ package com.googlesource.gerrit.plugins.importer;
 
 import static com.googlesource.gerrit.plugins.importer.ProgressMonitorUtil.updateAndEnd;
 
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.reviewdb.client.RefNames;
 import com.google.inject.Singleton;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.InvalidRemoteException;
 import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.lib.BatchRefUpdate;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.RefDatabase;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 
 @Singleton
 class GitFetchStep {
 
+  /** Namespaces that are always fetched if only some of the refs are fetched. */
+  private static final String[] NON_CHANGE_NAMESPACES = {
+    Constants.R_TAGS, "refs/meta/", Constants.R_NOTES
+  };
+
   void fetch(String user, String password, Repository repo, ProgressMonitor pm)
       throws InvalidRemoteException, TransportException, GitAPIException, IOException {
+    fetch(user, password, repo, null, pm);
+  }
+
+  /**
+   * Fetches from the origin remote.
+   *
+   * @param refSpecs the refs to fetch, {@code null} to fetch all refs as configured for the origin
+   *     remote
+   */
+  void fetch(
+      String user,
+      String password,
+      Repository repo,
+      @Nullable List<RefSpec> refSpecs,
+      ProgressMonitor pm)
+      throws InvalidRemoteException, TransportException, GitAPIException, IOException {
     pm.beginTask("Fetch project", 1);
     FetchCommand fetch = Git.wrap(repo).fetch();
     if (user != null) {
       fetch.setCredentialsProvider(new UsernamePasswordCredentialsProvider(user, password));
     }
-    fetch.setRemote("origin").call();
-    updateNonChangeRefs(repo);
+    fetch.setRemote("origin");
+    if (refSpecs != null) {
+      fetch.setRefSpecs(refSpecs);
+    }
+    fetch.call();
     updateAndEnd(pm);
   }
 
-  private void updateNonChangeRefs(Repository repo) throws IOException {
-    Map<String, Ref> refs = repo.getRefDatabase().getRefs(ConfigureRepositoryStep.R_IMPORTS);
+  /**
+   * Computes the ref specs for a fetch that only fetches some of the refs.
+   *
+   * <p>Tags, meta refs and notes are always fetched.
+   *
+   * @param branchRefs the branch refs to fetch (exact refs or wildcard refs), {@code null} to
+   *     fetch all branches
+   * @param changes the changes which revisions should be fetched, {@code null} to fetch all change
+   *     refs
+   * @return the ref specs
+   */
+  static List<RefSpec> refSpecs(
+      @Nullable Collection<String> branchRefs, @Nullable Collection<ChangeInfo> changes) {
+    Set<String> refs = new LinkedHashSet<>();
+    if (branchRefs != null) {
+      refs.addAll(branchRefs);
+    } else {
+      refs.add(Constants.R_HEADS + "*");
+    }
+    for (String namespace : NON_CHANGE_NAMESPACES) {
+      refs.add(namespace + "*");
+    }
+    if (changes != null) {
+      for (ChangeInfo c : changes) {
+        for (RevisionInfo r : c.revisions.values()) {
+          refs.add(r.ref);
+        }
+      }
+    } else {
+      refs.add(RefNames.REFS_CHANGES + "*");
+    }
+    List<RefSpec> refSpecs = new ArrayList<>(refs.size());
+    for (String ref : refs) {
+      refSpecs.add(
+          new RefSpec(
+              "+"
+                  + ref
+                  + ":"
+                  + ConfigureRepositoryStep.R_IMPORTS
+                  + ref.substring(Constants.R_REFS.length())));
+    }
+    return refSpecs;
+  }
+
+  /**
+   * Updates the branches, tags and other non-change refs from the fetched refs under {@link
+   * ConfigureRepositoryStep#R_IMPORTS}.
+   *
+   * <p>All refs are updated in a single batch, refs that already point to the fetched object are
+   * skipped.
+   *
+   * @param repo the repository
+   * @return the number of refs that were created or updated
+   * @throws IOException thrown if updating a ref fails
+   */
+  int updateNonChangeRefs(Repository repo) throws IOException {
+    RefDatabase refDb = repo.getRefDatabase();
+    Map<String, Ref> refs = refDb.getRefs(ConfigureRepositoryStep.R_IMPORTS);
+    BatchRefUpdate bru = refDb.newBatchUpdate();
+    bru.setAllowNonFastForwards(true);
     for (Map.Entry<String, Ref> e : refs.entrySet()) {
       String name = e.getKey();
       if (name.startsWith("imports/")) {
@@ -62,28 +159,39 @@ class GitFetchStep {
       if (name.startsWith("users/") && name.contains("/edit")) {
         continue;
       }
+      ObjectId newId = e.getValue().getObjectId();
+      if (newId == null) {
+        continue;
+      }
       String targetRef = Constants.R_REFS + name;
-      RefUpdate ru = repo.updateRef(targetRef);
-      ru.setNewObjectId(e.getValue().getObjectId());
-      RefUpdate.Result result = ru.forceUpdate();
-      switch (result) {
-        case NEW:
-        case FAST_FORWARD:
-        case FORCED:
-        case NO_CHANGE:
-          break;
-        case IO_FAILURE:
-        case LOCK_FAILURE:
-        case NOT_ATTEMPTED:
-        case REJECTED:
-        case REJECTED_CURRENT_BRANCH:
-        case RENAMED:
-        case REJECTED_MISSING_OBJECT:
-        case REJECTED_OTHER_REASON:
-        default:
-          throw new IOException(
-              String.format("Failed to update %s, RefUpdate.Result = %s", targetRef, result));
+      Ref old = refDb.exactRef(targetRef);
+      ObjectId oldId = old != null && old.getObjectId() != null ? old.getObjectId() : null;
+      if (newId.equals(oldId)) {
+        continue;
+      }
+      bru.addCommand(
+          new ReceiveCommand(
+              oldId != null ? oldId : ObjectId.zeroId(),
+              newId,
+              targetRef,
+              oldId != null
+                  ? ReceiveCommand.Type.UPDATE_NONFASTFORWARD
+                  : ReceiveCommand.Type.CREATE));
+    }
+    if (bru.getCommands().isEmpty()) {
+      return 0;
+    }
+    try (RevWalk rw = new RevWalk(repo)) {
+      bru.execute(rw, NullProgressMonitor.INSTANCE);
+    }
+    for (ReceiveCommand cmd : bru.getCommands()) {
+      if (cmd.getResult() != ReceiveCommand.Result.OK) {
+        throw new IOException(
+            String.format(
+                "Failed to update %s, ReceiveCommand.Result = %s",
+                cmd.getRefName(), cmd.getResult()));
       }
     }
+    return bru.getCommands().size();
   }
 }
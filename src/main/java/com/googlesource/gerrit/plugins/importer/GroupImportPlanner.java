@@ -0,0 +1,231 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import static com.google.gerrit.reviewdb.client.AccountGroup.isInternalGroup;
+
+import com.google.common.collect.Lists;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import com.google.gerrit.server.account.GroupCache;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gwtorm.server.OrmException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Plans the import of the groups that are used by a project.
+ *
+ * <p>The used groups and, transitively, their owner groups and included groups that are missing in
+ * the target system are retrieved from the source system first. All groups that are discovered in
+ * the same round are retrieved in parallel. The groups are then ordered so that the owner group
+ * and the included groups of a group are imported before the group itself. Cycles are broken
+ * arbitrarily, the import of a group still imports missing owner and included groups on its own.
+ *
+ * <p>The groups are retrieved in parallel only from a remote Gerrit server, the number of threads
+ * is configured by the {@code plugin.@PLUGIN@.groupFetchThreads} option in {@code gerrit.config}.
+ * The threads belong to a work queue that exists for one planning and is used for all its rounds,
+ * so that they are listed by {@code gerrit show-queue}. The groups are created sequentially, since
+ * creating a group is cheap compared to retrieving it.
+ */
+@Singleton
+class GroupImportPlanner {
+  private static final int DEFAULT_THREADS = 4;
+
+  private final GroupCache groupCache;
+  private final GerritApi.Factory apiFactory;
+  private final PluginConfigFactory cfgFactory;
+  private final WorkQueue workQueue;
+  private final String pluginName;
+
+  @Inject
+  GroupImportPlanner(
+      GroupCache groupCache,
+      GerritApi.Factory apiFactory,
+      PluginConfigFactory cfgFactory,
+      WorkQueue workQueue,
+      @PluginName String pluginName) {
+    this.groupCache = groupCache;
+    this.apiFactory = apiFactory;
+    this.cfgFactory = cfgFactory;
+    this.workQueue = workQueue;
+    this.pluginName = pluginName;
+  }
+
+  /**
+   * @param groups UUIDs of the groups that should be imported
+   * @return the groups that are missing in the target system in the order in which they should be
+   *     imported
+   */
+  List<GroupInfo> plan(String from, String user, String pass, Collection<AccountGroup.UUID> groups)
+      throws BadRequestException, IOException, OrmException {
+    Map<String, GroupInfo> infos = new LinkedHashMap<>();
+    Set<String> seen = new HashSet<>();
+    List<String> round = new ArrayList<>();
+    for (AccountGroup.UUID uuid : groups) {
+      addIfMissing(uuid.get(), seen, round);
+    }
+    if (round.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    int threads = 1;
+    if (!ProjectArchive.isArchive(from)) {
+      threads =
+          cfgFactory.getFromGerritConfig(pluginName).getInt("groupFetchThreads", DEFAULT_THREADS);
+    }
+    ScheduledExecutorService executor =
+        threads > 1 ? workQueue.createQueue(threads, "Import-Groups") : null;
+    try {
+      while (!round.isEmpty()) {
+        List<String> next = new ArrayList<>();
+        for (GroupInfo info : fetch(from, user, pass, round, executor, threads)) {
+          infos.put(info.id, info);
+          for (String dependency : dependencies(info)) {
+            addIfMissing(dependency, seen, next);
+          }
+        }
+        round = next;
+      }
+    } finally {
+      if (executor != null) {
+        // the work queue drops the queue once it is terminated
+        executor.shutdownNow();
+      }
+    }
+
+    List<GroupInfo> sorted = new ArrayList<>(infos.size());
+    Set<String> visited = new HashSet<>();
+    for (GroupInfo info : infos.values()) {
+      visit(info, infos, visited, sorted);
+    }
+    return sorted;
+  }
+
+  private void addIfMissing(String uuid, Set<String> seen, List<String> missing) {
+    AccountGroup.UUID groupUuid = new AccountGroup.UUID(uuid);
+    if (isInternalGroup(groupUuid) && seen.add(uuid) && !groupCache.get(groupUuid).isPresent()) {
+      missing.add(uuid);
+    }
+  }
+
+  private static List<String> dependencies(GroupInfo info) {
+    List<String> dependencies = new ArrayList<>();
+    if (info.ownerId != null && !info.ownerId.equals(info.id)) {
+      dependencies.add(info.ownerId);
+    }
+    if (info.includes != null) {
+      for (GroupInfo include : info.includes) {
+        dependencies.add(include.id);
+      }
+    }
+    return dependencies;
+  }
+
+  private static void visit(
+      GroupInfo info, Map<String, GroupInfo> infos, Set<String> visited, List<GroupInfo> sorted) {
+    if (!visited.add(info.id)) {
+      return;
+    }
+    for (String dependency : dependencies(info)) {
+      GroupInfo d = infos.get(dependency);
+      if (d != null) {
+        visit(d, infos, visited, sorted);
+      }
+    }
+    sorted.add(info);
+  }
+
+  /**
+   * Retrieves the groups of one round.
+   *
+   * @param executor the executor that retrieves the groups in parallel, {@code null} if the groups
+   *     should be retrieved by the calling thread
+   * @param threads the number of threads of the executor
+   */
+  private List<GroupInfo> fetch(
+      String from,
+      String user,
+      String pass,
+      List<String> uuids,
+      @Nullable ScheduledExecutorService executor,
+      int threads)
+      throws BadRequestException, IOException, OrmException {
+    int chunks = Math.min(uuids.size(), threads);
+    if (executor == null || chunks <= 1) {
+      return fetch(apiFactory.create(from, user, pass), uuids);
+    }
+
+    try {
+      List<Future<List<GroupInfo>>> futures = new ArrayList<>(chunks);
+      int chunkSize = (uuids.size() + chunks - 1) / chunks;
+      for (final List<String> chunk : Lists.partition(uuids, chunkSize)) {
+        // every thread needs its own API since the HTTP session is not thread-safe
+        final GerritApi api = apiFactory.create(from, user, pass);
+        futures.add(
+            executor.submit(
+                new Callable<List<GroupInfo>>() {
+                  @Override
+                  public List<GroupInfo> call() throws Exception {
+                    return fetch(api, chunk);
+                  }
+                }));
+      }
+      List<GroupInfo> result = new ArrayList<>(uuids.size());
+      for (Future<List<GroupInfo>> f : futures) {
+        result.addAll(f.get());
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while retrieving groups", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof BadRequestException) {
+        throw (BadRequestException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof OrmException) {
+        throw (OrmException) cause;
+      }
+      throw new IOException("Failed to retrieve groups", cause);
+    }
+  }
+
+  private static List<GroupInfo> fetch(GerritApi api, List<String> uuids)
+      throws BadRequestException, IOException, OrmException {
+    List<GroupInfo> result = new ArrayList<>(uuids.size());
+    for (String uuid : uuids) {
+      result.add(api.getGroup(uuid));
+    }
+    return result;
+  }
+}
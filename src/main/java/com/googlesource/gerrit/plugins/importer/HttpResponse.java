@@ -15,7 +15,9 @@
 package com.googlesource.gerrit.plugins.importer;
 
 import com.google.common.base.Preconditions;
+import com.google.common.io.CountingInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.ByteBuffer;
@@ -27,6 +29,7 @@ public class HttpResponse implements AutoCloseable {
 
   protected CloseableHttpResponse response;
   protected Reader reader;
+  private CountingInputStream content;
 
   HttpResponse(CloseableHttpResponse response) {
     this.response = response;
@@ -34,11 +37,26 @@ public class HttpResponse implements AutoCloseable {
 
   public Reader getReader() throws IllegalStateException, IOException {
     if (reader == null && response.getEntity() != null) {
-      reader = new InputStreamReader(response.getEntity().getContent());
+      reader = new InputStreamReader(getContent());
     }
     return reader;
   }
 
+  protected InputStream getContent() throws IllegalStateException, IOException {
+    if (content == null) {
+      content = new CountingInputStream(response.getEntity().getContent());
+    }
+    return content;
+  }
+
+  /**
+   * @return the number of bytes of the response body that were read so far, the reader may read
+   *     ahead of the characters that were consumed
+   */
+  public long getBytesRead() {
+    return content != null ? content.getCount() : 0;
+  }
+
   @Override
   public void close() throws IOException {
     try {
@@ -0,0 +1,132 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gerrit.common.Nullable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps IDs of the source system to IDs of the target system.
+ *
+ * <p>The mapping is persisted as an append-only log with one '{@code <key> <id>}' line per
+ * mapping, later lines override earlier lines for the same key. The log is read into an in-memory
+ * index once when it is opened, so that every lookup is a map access. Appended mappings are
+ * buffered until {@link #flush()} or {@link #close()} is invoked.
+ *
+ * <p>Every record is terminated by a newline. A last line without newline is a record that was
+ * only partially written (e.g. because the server was stopped), it is removed from the log when the
+ * log is opened, so that a partial ID is never read and new records start on a new line.
+ */
+class IdMappingLog implements AutoCloseable {
+  private final File file;
+  private final Map<String, Integer> index = new HashMap<>();
+  private Writer writer;
+
+  IdMappingLog(File file) throws IOException {
+    this.file = file;
+    if (file.isFile()) {
+      truncatePartialRecord();
+      try (BufferedReader r =
+          new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF_8))) {
+        String line;
+        while ((line = r.readLine()) != null) {
+          int i = line.lastIndexOf(' ');
+          if (i > 0) {
+            try {
+              index.put(line.substring(0, i), Integer.parseInt(line.substring(i + 1)));
+            } catch (NumberFormatException e) {
+              // ignore malformed records
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** Removes a last record that is not terminated by a newline. */
+  private void truncatePartialRecord() throws IOException {
+    try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+      long end = f.length();
+      long pos = end;
+      while (pos > 0) {
+        f.seek(pos - 1);
+        if (f.read() == '\n') {
+          break;
+        }
+        pos--;
+      }
+      if (pos < end) {
+        f.setLength(pos);
+      }
+    }
+  }
+
+  /** @return the mapped ID, {@code null} if no ID is mapped to the given key */
+  @Nullable
+  synchronized Integer get(String key) {
+    return index.get(key);
+  }
+
+  synchronized void put(String key, int id) throws IOException {
+    Integer old = index.put(key, id);
+    if (old != null && old == id) {
+      return;
+    }
+    if (writer == null) {
+      file.getParentFile().mkdirs();
+      writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF_8));
+    }
+    writer.write(key);
+    writer.write(' ');
+    writer.write(Integer.toString(id));
+    writer.write('\n');
+  }
+
+  /** Removes all mappings and deletes the log. */
+  synchronized void clear() throws IOException {
+    close();
+    index.clear();
+    if (file.exists() && !file.delete()) {
+      throw new IOException(String.format("Failed to delete %s", file));
+    }
+  }
+
+  synchronized void flush() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+
+/**
+ * Persists which source entities have been imported as which target entities.
+ *
+ * <p>The mappings are stored in the plugin data directory next to the import files:
+ *
+ * <ul>
+ *   <li>'{@code <target-project-name>.$importchanges}': source change number to target change ID
+ *       of the changes of a project, written when the link to the original change is inserted
+ *   <li>'{@code $importaccounts}': username to target account ID of all accounts that were
+ *       resolved by any import
+ * </ul>
+ *
+ * <p>The mappings are only a shortcut, every mapped entity must be verified by the caller since it
+ * may have been deleted or modified in the target system in the meantime.
+ */
+@Singleton
+class IdMappingStore {
+  private final ProjectsCollection projects;
+  private IdMappingLog accounts;
+
+  @Inject
+  IdMappingStore(ProjectsCollection projects) {
+    this.projects = projects;
+  }
+
+  /**
+   * Opens the change mapping of a project, the returned log must be closed by the caller.
+   *
+   * <p>The log is not thread-safe against other processes, it must only be opened while the import
+   * file of the project is locked.
+   */
+  IdMappingLog openChangeMapping(Project.NameKey project) throws IOException {
+    return new IdMappingLog(projects.FS_LAYOUT.getChangeMappingFile(project.get()));
+  }
+
+  @Nullable
+  Account.Id getAccount(String username) throws IOException {
+    Integer id = accounts().get(username);
+    return id != null ? new Account.Id(id) : null;
+  }
+
+  void putAccount(String username, Account.Id id) throws IOException {
+    IdMappingLog log = accounts();
+    log.put(username, id.get());
+    // accounts are rarely created, the log is not kept open
+    log.close();
+  }
+
+  private synchronized IdMappingLog accounts() throws IOException {
+    if (accounts == null) {
+      accounts = new IdMappingLog(projects.FS_LAYOUT.getAccountMappingFile());
+    }
+    return accounts;
+  }
+}
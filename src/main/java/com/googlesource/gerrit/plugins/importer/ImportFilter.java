@@ -0,0 +1,300 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.common.base.Joiner;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.client.ChangeStatus;
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.ChangeMessageInfo;
+import com.google.gerrit.extensions.common.RevisionInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import org.eclipse.jgit.lib.Constants;
+
+/**
+ * Restricts the changes that are imported.
+ *
+ * <p>The filter is pushed down into the change query on the source system and into the ref specs
+ * of the fetch. The changes that are returned by the query are checked again, since project
+ * archives cannot be queried.
+ */
+public class ImportFilter {
+  public static final String STATUS_OPEN = "open";
+  public static final String STATUS_MERGED = "merged";
+  public static final String STATUS_ABANDONED = "abandoned";
+
+  private static final DateTimeFormatter QUERY_TIMESTAMP_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS Z").withZone(ZoneOffset.UTC);
+
+  /** Status of the changes that are imported: {@code open}, {@code merged} or {@code abandoned}. */
+  public List<String> status;
+
+  /**
+   * Branches of the changes that are imported, either exact branch names or prefixes that end with
+   * {@code *}.
+   */
+  public List<String> branches;
+
+  /** Only changes that were modified after this timestamp are imported. */
+  public Timestamp updatedAfter;
+
+  /** Maximum number of patch sets that is imported per change, older patch sets are skipped. */
+  public Integer maxPatchSets;
+
+  /**
+   * Creates a filter from command line options.
+   *
+   * @return the filter, {@code null} if no restriction was specified
+   */
+  @Nullable
+  static ImportFilter create(
+      List<String> status,
+      List<String> branches,
+      @Nullable String updatedAfter,
+      @Nullable Integer maxPatchSets)
+      throws BadRequestException {
+    if (status.isEmpty() && branches.isEmpty() && updatedAfter == null && maxPatchSets == null) {
+      return null;
+    }
+    ImportFilter filter = new ImportFilter();
+    filter.status = !status.isEmpty() ? status : null;
+    filter.branches = !branches.isEmpty() ? branches : null;
+    filter.updatedAfter = updatedAfter != null ? parseTimestamp(updatedAfter) : null;
+    filter.maxPatchSets = maxPatchSets;
+    return filter;
+  }
+
+  void validate() throws BadRequestException {
+    if (status != null) {
+      for (String s : status) {
+        String normalized = s.toLowerCase(Locale.US);
+        if (!STATUS_OPEN.equals(normalized)
+            && !STATUS_MERGED.equals(normalized)
+            && !STATUS_ABANDONED.equals(normalized)) {
+          throw new BadRequestException(
+              String.format(
+                  "invalid status %s, allowed are %s, %s and %s",
+                  s, STATUS_OPEN, STATUS_MERGED, STATUS_ABANDONED));
+        }
+      }
+    }
+    if (branches != null) {
+      for (String b : branches) {
+        int i = b.indexOf('*');
+        if (i >= 0 && i != b.length() - 1) {
+          throw new BadRequestException(
+              String.format("invalid branch pattern %s, only a trailing '*' is supported", b));
+        }
+      }
+    }
+    if (maxPatchSets != null && maxPatchSets < 1) {
+      throw new BadRequestException("max patch sets must be at least 1");
+    }
+  }
+
+  /** Parses a timestamp in the format {@code yyyy-MM-dd[ HH:mm:ss[.fffffffff]]}. */
+  static Timestamp parseTimestamp(String value) throws BadRequestException {
+    try {
+      return Timestamp.valueOf(value.trim().length() == 10 ? value.trim() + " 00:00:00" : value);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(
+          String.format("invalid timestamp %s, expected yyyy-MM-dd[ HH:mm:ss]", value));
+    }
+  }
+
+  /** Formats a timestamp for the {@code after} and {@code before} query operators. */
+  static String formatQueryTimestamp(Timestamp ts) {
+    return QUERY_TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(ts.getTime()));
+  }
+
+  /**
+   * @return the query operators that implement this filter, {@code null} if the filter does not
+   *     restrict the query
+   */
+  @Nullable
+  String toQuery() {
+    List<String> query = new ArrayList<>();
+    if (status != null && !status.isEmpty()) {
+      List<String> or = new ArrayList<>();
+      for (String s : status) {
+        or.add("status:" + s.toLowerCase(Locale.US));
+      }
+      query.add(or(or));
+    }
+    if (branches != null && !branches.isEmpty()) {
+      List<String> or = new ArrayList<>();
+      for (String b : branches) {
+        b = shortName(b);
+        if (b.endsWith("*")) {
+          or.add("branch:\"^" + escapeRegex(b.substring(0, b.length() - 1)) + ".*\"");
+        } else {
+          or.add("branch:\"" + b + "\"");
+        }
+      }
+      query.add(or(or));
+    }
+    if (updatedAfter != null) {
+      query.add("after:\"" + formatQueryTimestamp(updatedAfter) + "\"");
+    }
+    return query.isEmpty() ? null : Joiner.on(' ').join(query);
+  }
+
+  /** @return whether the change matches the status, branch and age restrictions */
+  boolean matches(ChangeInfo c) {
+    if (status != null && !status.isEmpty()) {
+      boolean match = false;
+      for (String s : status) {
+        if (s.equalsIgnoreCase(status(c.status))) {
+          match = true;
+          break;
+        }
+      }
+      if (!match) {
+        return false;
+      }
+    }
+    if (branches != null && !branches.isEmpty()) {
+      boolean match = false;
+      for (String b : branches) {
+        if (matchesBranch(shortName(b), c.branch)) {
+          match = true;
+          break;
+        }
+      }
+      if (!match) {
+        return false;
+      }
+    }
+    return updatedAfter == null || c.updated.after(updatedAfter);
+  }
+
+  /**
+   * Removes the revisions that are older than the last {@link #maxPatchSets} patch sets.
+   *
+   * <p>The change messages of the removed patch sets are kept, but are no longer associated with
+   * a patch set, since the patch sets are not created in the target system.
+   */
+  void trimRevisions(ChangeInfo c) {
+    if (maxPatchSets == null || c.revisions.size() <= maxPatchSets) {
+      return;
+    }
+    int max = 0;
+    for (RevisionInfo r : c.revisions.values()) {
+      max = Math.max(max, r._number);
+    }
+    int min = max - maxPatchSets + 1;
+    for (Iterator<Map.Entry<String, RevisionInfo>> it = c.revisions.entrySet().iterator();
+        it.hasNext(); ) {
+      if (it.next().getValue()._number < min) {
+        it.remove();
+      }
+    }
+    if (c.messages != null) {
+      for (ChangeMessageInfo m : c.messages) {
+        if (m._revisionNumber != null && m._revisionNumber < min) {
+          m._revisionNumber = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the branch ref specs (without destination) that need to be fetched, {@code null} if
+   *     all branches need to be fetched
+   */
+  @Nullable
+  List<String> getBranchRefs() {
+    if (branches == null || branches.isEmpty()) {
+      return null;
+    }
+    List<String> refs = new ArrayList<>();
+    for (String b : branches) {
+      b = shortName(b);
+      if (b.endsWith("*") && !b.endsWith("/*") && !b.equals("*")) {
+        // JGit only supports wildcards for whole path components
+        return null;
+      }
+      refs.add(Constants.R_HEADS + b);
+    }
+    return refs;
+  }
+
+  private static String status(ChangeStatus status) {
+    switch (status) {
+      case MERGED:
+        return STATUS_MERGED;
+      case ABANDONED:
+        return STATUS_ABANDONED;
+      case NEW:
+      default:
+        return STATUS_OPEN;
+    }
+  }
+
+  private static boolean matchesBranch(String pattern, String branch) {
+    if (pattern.endsWith("*")) {
+      return branch.startsWith(pattern.substring(0, pattern.length() - 1));
+    }
+    return branch.equals(pattern);
+  }
+
+  private static String shortName(String branch) {
+    return branch.startsWith(Constants.R_HEADS)
+        ? branch.substring(Constants.R_HEADS.length())
+        : branch;
+  }
+
+  private static String escapeRegex(String s) {
+    StringBuilder b = new StringBuilder();
+    for (char c : s.toCharArray()) {
+      if (!Character.isLetterOrDigit(c) && c != '/' && c != '-' && c != '_') {
+        b.append('\\');
+      }
+      b.append(c);
+    }
+    return b.toString();
+  }
+
+  private static String or(List<String> operators) {
+    return operators.size() == 1 ? operators.get(0) : "(" + Joiner.on(" OR ").join(operators) + ")";
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof ImportFilter)) {
+      return false;
+    }
+    ImportFilter f = (ImportFilter) o;
+    return Objects.equals(status, f.status)
+        && Objects.equals(branches, f.branches)
+        && Objects.equals(updatedAfter, f.updatedAfter)
+        && Objects.equals(maxPatchSets, f.maxPatchSets);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(status, branches, updatedAfter, maxPatchSets);
+  }
+}
@@ -0,0 +1,58 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gerrit.sshd.SshCommand;
+import java.util.ArrayList;
+import java.util.List;
+import org.kohsuke.args4j.Option;
+
+/** Base class of the commands that import changes, provides the options of the change filter. */
+abstract class ImportFilterCommand extends SshCommand {
+  @Option(
+      name = "--status",
+      metaVar = "STATUS",
+      usage =
+          "only import changes with this status (open, merged or abandoned),"
+              + " can be specified multiple times")
+  private List<String> status = new ArrayList<>();
+
+  @Option(
+      name = "--branch",
+      metaVar = "BRANCH",
+      usage =
+          "only import changes of this branch, a trailing '*' matches all branches"
+              + " with this prefix, can be specified multiple times")
+  private List<String> branches = new ArrayList<>();
+
+  @Option(
+      name = "--updated-after",
+      metaVar = "TIMESTAMP",
+      usage = "only import changes that were modified after this timestamp (yyyy-MM-dd[ HH:mm:ss])")
+  private String updatedAfter;
+
+  @Option(
+      name = "--max-patch-sets",
+      metaVar = "N",
+      usage = "maximum number of patch sets that are imported per change")
+  private Integer maxPatchSets;
+
+  /** @return the filter from the options, {@code null} if none of the options was specified */
+  @Nullable
+  protected ImportFilter getFilter() throws BadRequestException {
+    return ImportFilter.create(status, branches, updatedAfter, maxPatchSets);
+  }
+}
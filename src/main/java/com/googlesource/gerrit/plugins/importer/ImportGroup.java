@@ -52,7 +52,7 @@ import com.googlesource.gerrit.plugins.importer.ImportGroup.Input;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -88,6 +88,9 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
   private final GerritApi.Factory apiFactory;
   private final AccountGroup.NameKey group;
   private GerritApi api;
+  private RemoteGroupCache remoteGroups;
+  private DeferredCacheEvictions evictions;
+  private UniqueGroupNames uniqueNames;
 
   @Inject
   ImportGroup(
@@ -113,15 +116,65 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
     this.group = group;
   }
 
+  /**
+   * Sets the cache for the groups that are retrieved from the source system.
+   *
+   * <p>The cache is passed on to the imports of the owner and included groups. If no cache is set,
+   * a new cache is used.
+   */
+  ImportGroup setRemoteGroupCache(RemoteGroupCache remoteGroups) {
+    this.remoteGroups = remoteGroups;
+    return this;
+  }
+
+  /**
+   * Sets the cache evictions that are done at the end of the import.
+   *
+   * <p>The evictions are passed on to the imports of the owner and included groups. If no
+   * evictions are set, the evictions are done at the end of this import.
+   */
+  ImportGroup setDeferredCacheEvictions(DeferredCacheEvictions evictions) {
+    this.evictions = evictions;
+    return this;
+  }
+
+  /**
+   * Sets the names that are allocated for the imported groups.
+   *
+   * <p>The names are passed on to the imports of the owner and included groups. If no names are
+   * set, a new set of names is used for this import.
+   */
+  ImportGroup setUniqueGroupNames(UniqueGroupNames uniqueNames) {
+    this.uniqueNames = uniqueNames;
+    return this;
+  }
+
   @Override
   public Response<String> apply(ConfigResource rsrc, Input input)
       throws NoSuchAccountException, OrmException, IOException, RestApiException,
           ConfigInvalidException {
-    GroupInfo groupInfo;
     this.api = apiFactory.create(input.from, input.user, input.pass);
-    groupInfo = api.getGroup(group.get());
-    validate(input, groupInfo);
-    createGroup(input, groupInfo);
+    if (remoteGroups == null) {
+      remoteGroups = new RemoteGroupCache();
+    }
+    GroupInfo groupInfo = remoteGroups.get(api, group.get());
+    if (uniqueNames == null) {
+      uniqueNames = new UniqueGroupNames();
+    }
+    boolean flushEvictions = evictions == null;
+    if (flushEvictions) {
+      evictions = new DeferredCacheEvictions();
+    }
+    try {
+      validate(input, groupInfo);
+      Set<Account.Id> members = resolveMembers(groupInfo);
+      validateNewGroup(groupInfo, members);
+      createGroup(input, groupInfo, members);
+    } finally {
+      if (flushEvictions) {
+        evictions.flush(accountCache, groupIncludeCache);
+      }
+    }
 
     return Response.ok("OK");
   }
@@ -135,30 +188,21 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
               "Group with name %s is not an internal group and cannot be imported",
               groupInfo.name));
     }
-    if (getGroupByUUID(groupInfo.id) != null) {
+    if (getGroupByUUID(groupInfo.id).isPresent()) {
       throw new ResourceConflictException(
           String.format("Group with UUID %s already exists", groupInfo.id));
     }
     if (!groupInfo.id.equals(groupInfo.ownerId))
-      if (!input.importOwnerGroup && getGroupByUUID(groupInfo.ownerId) == null) {
+      if (!input.importOwnerGroup && !getGroupByUUID(groupInfo.ownerId).isPresent()) {
         throw new PreconditionFailedException(
             String.format(
                 "Owner group %s with UUID %s does not exist",
                 getGroupName(groupInfo.ownerId), groupInfo.ownerId));
       }
-    if (groupInfo.members != null) {
-      for (AccountInfo member : groupInfo.members) {
-        try {
-          accountUtil.resolveUser(api, member);
-        } catch (NoSuchAccountException e) {
-          throw new PreconditionFailedException(e.getMessage());
-        }
-      }
-    }
     if (!input.importIncludedGroups) {
       if (groupInfo.includes != null) {
         for (GroupInfo include : groupInfo.includes) {
-          if (getGroupByUUID(include.id) == null) {
+          if (!getGroupByUUID(include.id).isPresent()) {
             throw new PreconditionFailedException(
                 String.format(
                     "Included group %s with UUID %s does not exist",
@@ -167,53 +211,70 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
         }
       }
     }
+  }
 
+  /**
+   * Resolves the members of the group once, the resolved accounts are used for the validation and
+   * for the creation of the group.
+   */
+  private Set<Account.Id> resolveMembers(GroupInfo groupInfo)
+      throws IOException, OrmException, RestApiException, ConfigInvalidException {
+    Set<Account.Id> members = new LinkedHashSet<>();
+    if (groupInfo.members != null) {
+      for (AccountInfo member : groupInfo.members) {
+        try {
+          members.add(accountUtil.resolveUser(api, member));
+        } catch (NoSuchAccountException e) {
+          throw new PreconditionFailedException(e.getMessage());
+        }
+      }
+    }
+    return members;
+  }
+
+  private void validateNewGroup(GroupInfo groupInfo, Set<Account.Id> members)
+      throws ResourceConflictException {
+    CreateGroupArgs args = toCreateGroupArgs(groupInfo, members);
     for (GroupCreationValidationListener l : groupCreationValidationListeners) {
       try {
-        l.validateNewGroup(toCreateGroupArgs(groupInfo));
+        l.validateNewGroup(args);
       } catch (ValidationException e) {
         throw new ResourceConflictException(e.getMessage(), e);
       }
     }
   }
 
-  private Optional<InternalGroup> getGroupByName(String groupName) {
-    return groupCache.get(new AccountGroup.NameKey(groupName));
-  }
-
   private Optional<InternalGroup> getGroupByUUID(String uuid) {
     return groupCache.get(new AccountGroup.UUID(uuid));
   }
 
-  private CreateGroupArgs toCreateGroupArgs(GroupInfo groupInfo)
-      throws IOException, OrmException, NoSuchAccountException, RestApiException,
-          ConfigInvalidException {
+  private CreateGroupArgs toCreateGroupArgs(GroupInfo groupInfo, Set<Account.Id> members) {
     CreateGroupArgs args = new CreateGroupArgs();
     args.setGroupName(groupInfo.name);
     args.groupDescription = groupInfo.description;
     args.visibleToAll = cfg.getBoolean("groups", "newGroupsVisibleToAll", false);
     if (!groupInfo.ownerId.equals(groupInfo.id)) {
-      args.ownerGroupId = getGroupByUUID(groupInfo.ownerId).get().getId();
-    }
-    Set<Account.Id> initialMembers = new HashSet<>();
-    for (AccountInfo member : groupInfo.members) {
-      initialMembers.add(accountUtil.resolveUser(api, member));
+      // the owner group may only be imported after this group
+      Optional<InternalGroup> owner = getGroupByUUID(groupInfo.ownerId);
+      if (owner.isPresent()) {
+        args.ownerGroupId = owner.get().getId();
+      }
     }
-    args.initialMembers = initialMembers;
+    args.initialMembers = members;
     return args;
   }
 
-  private AccountGroup createGroup(Input input, GroupInfo info)
+  private AccountGroup createGroup(Input input, GroupInfo info, Set<Account.Id> members)
       throws OrmException, NoSuchAccountException, IOException, RestApiException,
           ConfigInvalidException {
-    String uniqueName = getUniqueGroupName(info.name);
-    if (!info.name.equals(uniqueName)) {
+    // the group info is shared with other imports, it must keep the name of the source group
+    String name = uniqueNames.allocate(db, info.name);
+    if (!info.name.equals(name)) {
       log.warn(
           String.format(
-              "Group %s with UUID %s is imported with name %s", info.name, info.id, uniqueName));
-      info.name = uniqueName;
+              "Group %s with UUID %s is imported with name %s", info.name, info.id, name));
     }
-    AccountGroup group = createAccountGroup(info);
+    AccountGroup group = createAccountGroup(info, name);
     AccountGroupName gn = new AccountGroupName(group);
 
     // first insert the group name to validate that the group name hasn't
@@ -221,24 +282,27 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
     try {
       db.accountGroupNames().insert(Collections.singleton(gn));
     } catch (OrmDuplicateKeyException e) {
-      throw new ResourceConflictException(info.name);
+      throw new ResourceConflictException(name);
     }
     db.accountGroups().insert(Collections.singleton(group));
     groupCache.evict(group.getGroupUUID(), group.getId(), group.getNameKey());
 
     if (!info.id.equals(info.ownerId)) {
-      if (getGroupByUUID(info.ownerId) == null) {
+      if (!getGroupByUUID(info.ownerId).isPresent()) {
         if (isInternalGroup(new AccountGroup.UUID(info.ownerId))) {
           String ownerGroupName = getGroupName(info.ownerId);
           if (input.importOwnerGroup) {
             importGroupFactory
                 .create(new AccountGroup.NameKey(ownerGroupName))
+                .setRemoteGroupCache(remoteGroups)
+                .setDeferredCacheEvictions(evictions)
+                .setUniqueGroupNames(uniqueNames)
                 .apply(new ConfigResource(), input);
           } else {
             throw new IllegalStateException(
                 String.format(
                     "Cannot set non-existing group %s as owner of group %s.",
-                    ownerGroupName, info.name));
+                    ownerGroupName, name));
           }
         }
       }
@@ -246,59 +310,31 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
       db.accountGroups().upsert(Collections.singleton(group));
     }
 
-    addMembers(group.getId(), info.members);
-    addGroups(input, group.getId(), info.name, info.includes);
+    addMembers(group.getId(), members);
+    addGroups(input, group.getId(), name, info.includes);
 
     groupCache.evict(group.getGroupUUID(), group.getId(), group.getNameKey());
 
     return group;
   }
 
-  private String getUniqueGroupName(String name) {
-    return getUniqueGroupName(name, false);
-  }
-
-  private String getUniqueGroupName(String name, boolean appendIndex) {
-    if (getGroupByName(name) == null) {
-      return name;
-    }
-    if (appendIndex) {
-      int i = 0;
-      while (true) {
-        String groupName = String.format("%s-%d", name, ++i);
-        if (getGroupByName(groupName) == null) {
-          return groupName;
-        }
-      }
-    }
-    return getUniqueGroupName(String.format("%s_imported", name), true);
-  }
-
-  private AccountGroup createAccountGroup(GroupInfo info) throws OrmException {
+  private AccountGroup createAccountGroup(GroupInfo info, String name) throws OrmException {
     AccountGroup.Id groupId = new AccountGroup.Id(db.nextAccountGroupId());
     AccountGroup.UUID uuid = new AccountGroup.UUID(info.id);
     AccountGroup group =
-        new AccountGroup(new AccountGroup.NameKey(info.name), groupId, uuid, TimeUtil.nowTs());
+        new AccountGroup(new AccountGroup.NameKey(name), groupId, uuid, TimeUtil.nowTs());
     group.setVisibleToAll(cfg.getBoolean("groups", "newGroupsVisibleToAll", false));
     group.setDescription(info.description);
     return group;
   }
 
-  private void addMembers(AccountGroup.Id groupId, List<AccountInfo> members)
-      throws OrmException, NoSuchAccountException, IOException, RestApiException,
-          ConfigInvalidException {
-    List<AccountGroupMember> memberships = new ArrayList<>();
-    for (AccountInfo member : members) {
-      Account.Id userId = accountUtil.resolveUser(api, member);
-      AccountGroupMember membership =
-          new AccountGroupMember(new AccountGroupMember.Key(userId, groupId));
-      memberships.add(membership);
+  private void addMembers(AccountGroup.Id groupId, Set<Account.Id> members) throws OrmException {
+    List<AccountGroupMember> memberships = new ArrayList<>(members.size());
+    for (Account.Id userId : members) {
+      memberships.add(new AccountGroupMember(new AccountGroupMember.Key(userId, groupId)));
     }
     db.accountGroupMembers().insert(memberships);
-
-    for (AccountInfo member : members) {
-      accountCache.evict(accountUtil.resolveUser(api, member));
-    }
+    evictions.evictAccounts(members);
   }
 
   private void addGroups(
@@ -308,11 +344,14 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
     List<AccountGroupById> includeList = new ArrayList<>();
     for (GroupInfo includedGroup : includedGroups) {
       if (isInternalGroup(new AccountGroup.UUID(includedGroup.id))) {
-        if (getGroupByUUID(includedGroup.id) == null) {
+        if (!getGroupByUUID(includedGroup.id).isPresent()) {
           String includedGroupName = getGroupName(includedGroup.id);
           if (input.importIncludedGroups) {
             importGroupFactory
                 .create(new AccountGroup.NameKey(includedGroupName))
+                .setRemoteGroupCache(remoteGroups)
+                .setDeferredCacheEvictions(evictions)
+                .setUniqueGroupNames(uniqueNames)
                 .apply(new ConfigResource(), input);
           } else {
             throw new IllegalStateException(
@@ -330,11 +369,11 @@ class ImportGroup implements RestModifyView<ConfigResource, Input> {
     db.accountGroupById().insert(includeList);
 
     for (GroupInfo member : includedGroups) {
-      groupIncludeCache.evictParentGroupsOf(new AccountGroup.UUID(member.id));
+      evictions.evictParentGroupsOf(new AccountGroup.UUID(member.id));
     }
   }
 
   private String getGroupName(String uuid) throws BadRequestException, IOException, OrmException {
-    return api.getGroup(uuid).name;
+    return remoteGroups.get(api, uuid).name;
   }
 }
@@ -14,15 +14,16 @@
 
 package com.googlesource.gerrit.plugins.importer;
 
-import static com.google.gerrit.reviewdb.client.AccountGroup.isInternalGroup;
-
 import com.google.gerrit.common.errors.NoSuchAccountException;
+import com.google.gerrit.extensions.common.GroupInfo;
 import com.google.gerrit.extensions.restapi.MethodNotAllowedException;
 import com.google.gerrit.extensions.restapi.ResourceConflictException;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.reviewdb.client.AccountGroup;
 import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.account.AccountCache;
 import com.google.gerrit.server.account.GroupCache;
+import com.google.gerrit.server.account.GroupIncludeCache;
 import com.google.gerrit.server.config.ConfigResource;
 import com.google.gerrit.server.git.ProjectConfig;
 import com.google.gerrit.server.project.ProjectCache;
@@ -30,6 +31,7 @@ import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.ProgressMonitor;
@@ -47,7 +49,10 @@ public class ImportGroupsStep {
 
   private final ProjectCache projectCache;
   private final GroupCache groupCache;
+  private final AccountCache accountCache;
+  private final GroupIncludeCache groupIncludeCache;
   private final ImportGroup.Factory importGroupFactory;
+  private final GroupImportPlanner planner;
   private final String fromGerrit;
   private final String user;
   private final String password;
@@ -58,7 +63,10 @@ public class ImportGroupsStep {
   ImportGroupsStep(
       ProjectCache projectCache,
       GroupCache groupCache,
+      AccountCache accountCache,
+      GroupIncludeCache groupIncludeCache,
       ImportGroup.Factory importGroupFactory,
+      GroupImportPlanner planner,
       @Assisted("from") String fromGerrit,
       @Assisted("user") String user,
       @Assisted("password") String password,
@@ -66,7 +74,10 @@ public class ImportGroupsStep {
       @Assisted ProgressMonitor pm) {
     this.projectCache = projectCache;
     this.groupCache = groupCache;
+    this.accountCache = accountCache;
+    this.groupIncludeCache = groupIncludeCache;
     this.importGroupFactory = importGroupFactory;
+    this.planner = planner;
     this.fromGerrit = fromGerrit;
     this.user = user;
     this.password = password;
@@ -79,10 +90,22 @@ public class ImportGroupsStep {
           ConfigInvalidException {
     ProjectConfig projectConfig = projectCache.get(project).getConfig();
     Set<AccountGroup.UUID> groupUUIDs = projectConfig.getAllGroupUUIDs();
-    pm.beginTask("Import Groups", groupUUIDs.size());
-    for (AccountGroup.UUID groupUUID : groupUUIDs) {
-      if (isInternalGroup(groupUUID)) {
-        if (groupCache.get(groupUUID) == null) {
+    pm.beginTask("Retrieve Groups", ProgressMonitor.UNKNOWN);
+    List<GroupInfo> groups = planner.plan(fromGerrit, user, password, groupUUIDs);
+    RemoteGroupCache remoteGroups = new RemoteGroupCache();
+    for (GroupInfo group : groups) {
+      remoteGroups.put(group);
+    }
+    pm.endTask();
+
+    pm.beginTask("Import Groups", groups.size());
+    // the caches are evicted once for all groups at the end
+    DeferredCacheEvictions evictions = new DeferredCacheEvictions();
+    UniqueGroupNames uniqueNames = new UniqueGroupNames();
+    try {
+      for (GroupInfo group : groups) {
+        // groups in a cycle may have been imported by the import of another group
+        if (!groupCache.get(new AccountGroup.UUID(group.id)).isPresent()) {
           ImportGroup.Input input = new ImportGroup.Input();
           input.from = fromGerrit;
           input.user = user;
@@ -91,15 +114,20 @@ public class ImportGroupsStep {
           input.importIncludedGroups = true;
           try {
             importGroupFactory
-                .create(new AccountGroup.NameKey(projectConfig.getGroup(groupUUID).getName()))
+                .create(new AccountGroup.NameKey(group.name))
+                .setRemoteGroupCache(remoteGroups)
+                .setDeferredCacheEvictions(evictions)
+                .setUniqueGroupNames(uniqueNames)
                 .apply(new ConfigResource(), input);
           } catch (ResourceConflictException | MethodNotAllowedException e) {
             // should not happen
             throw new IllegalStateException(e);
           }
         }
+        pm.update(1);
       }
-      pm.update(1);
+    } finally {
+      evictions.flush(accountCache, groupIncludeCache);
     }
     pm.endTask();
   }
@@ -22,6 +22,7 @@ import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.OutputFormat;
 import com.google.gerrit.server.account.AccountLoader;
+import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
@@ -57,6 +58,7 @@ public class ImportJson {
       info.parent = input.parent;
       info.imports = new ArrayList<>();
     }
+    info.filter = input.filter;
 
     info.imports.add(createImportInfo(input.user));
     return info;
@@ -85,6 +87,31 @@ public class ImportJson {
     updateAndEnd(pm);
   }
 
+  /**
+   * Persists the import info into the import file of a running import.
+   *
+   * <p>The import file is locked again while it is written since the lock that was taken at the
+   * start of the import was released when the parameters were persisted.
+   */
+  public static void update(File importStatus, ImportProjectInfo info, ProgressMonitor pm)
+      throws IOException {
+    LockFile lockFile = new LockFile(importStatus);
+    if (!lockFile.lock()) {
+      throw new IOException(String.format("Failed to lock %s", importStatus));
+    }
+    try {
+      persist(lockFile, info, pm);
+    } finally {
+      lockFile.unlock();
+    }
+  }
+
+  /** @return a deep copy of the import info that does not share any state with the given one */
+  static ImportProjectInfo copy(ImportProjectInfo info) {
+    Gson gson = OutputFormat.JSON_COMPACT.newGson();
+    return gson.fromJson(gson.toJson(info), ImportProjectInfo.class);
+  }
+
   public static ImportProjectInfo parse(File f) throws IOException {
     try (FileReader r = new FileReader(f)) {
       return OutputFormat.JSON_COMPACT
@@ -20,31 +20,33 @@ import com.google.common.collect.MultimapBuilder;
 import com.google.gerrit.audit.AuditEvent;
 import com.google.gerrit.audit.AuditService;
 import com.google.gerrit.common.TimeUtil;
+import com.google.gerrit.common.errors.NoSuchAccountException;
+import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.extensions.systemstatus.ServerInformation;
 import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.config.CanonicalWebUrl;
+import com.google.gerrit.server.update.UpdateException;
 import com.google.gerrit.server.util.PluginLogFile;
 import com.google.gerrit.server.util.SystemLog;
+import com.google.gerrit.server.validators.ValidationException;
+import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.io.IOException;
 import org.apache.log4j.Level;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 import org.apache.log4j.spi.LoggingEvent;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.TransportException;
 
 @Singleton
 class ImportLog extends PluginLogFile {
   private static final String IMPORT_LOG_NAME = "import_log";
   private static final Logger log = LogManager.getLogger(IMPORT_LOG_NAME);
 
-  public static String ACCOUNT_ID = "accountId";
-  public static String USER_NAME = "userName";
-  public static String FROM = "from";
-  public static String SRC_PROJECT_NAME = "srcProjectName";
-  public static String TARGET_PROJECT_NAME = "targetProjectName";
-  public static String ERROR = "error";
-
   private final AuditService auditService;
   private final String canonicalWebUrl;
 
@@ -60,17 +62,53 @@ class ImportLog extends PluginLogFile {
   }
 
   public void onImport(
-      IdentifiedUser user, Project.NameKey srcProject, Project.NameKey targetProject, String from) {
-    onImport(user, srcProject, targetProject, from, null);
+      IdentifiedUser user,
+      Project.NameKey srcProject,
+      Project.NameKey targetProject,
+      String from,
+      boolean resume,
+      ImportStatistic statistic) {
+    onImport(user, srcProject, targetProject, from, resume, statistic, null);
   }
 
+  /**
+   * Logs an import.
+   *
+   * <p>Only the entry is created by the calling thread, it is formatted and written by the
+   * asynchronous appender of the log.
+   */
   public void onImport(
       IdentifiedUser user,
       Project.NameKey srcProject,
       Project.NameKey targetProject,
       String from,
+      boolean resume,
+      ImportStatistic statistic,
       Exception ex) {
     long ts = TimeUtil.nowMs();
+    ImportLogEntry entry = new ImportLogEntry();
+    entry.status = ex == null ? "OK" : "FAIL";
+    entry.accountId = user.getAccountId().get();
+    entry.userName = user.getUserName();
+    entry.from = from != null ? from : canonicalWebUrl;
+    entry.srcProjectName = srcProject.get();
+    entry.targetProjectName = targetProject.get();
+    entry.resume = resume;
+    entry.timeMs = statistic.timeMs;
+    entry.numChangesCreated = statistic.numChangesCreated;
+    if (statistic instanceof ResumeImportStatistic) {
+      entry.numChangesUpdated = ((ResumeImportStatistic) statistic).numChangesUpdated;
+    }
+    entry.numRefsUpdated = statistic.numRefsUpdated;
+    entry.changeQueryBytes = statistic.changeQueryBytes;
+    entry.gcPackSizeBytes = statistic.gcPackSizeBytes;
+    entry.steps = statistic.steps;
+    if (ex != null) {
+      entry.errorCategory = getErrorCategory(ex);
+      entry.error = ex.toString();
+      entry.stackTrace = Throwables.getStackTraceAsString(ex);
+    }
+
     LoggingEvent event =
         new LoggingEvent( //
             Logger.class.getName(), // fqnOfCategoryClass
@@ -79,37 +117,38 @@ class ImportLog extends PluginLogFile {
             ex == null // level
                 ? Level.INFO
                 : Level.ERROR,
-            ex == null // message text
-                ? "OK"
-                : "FAIL",
+            entry, // message
             Thread.currentThread().getName(), // thread name
             null, // exception information
             null, // current NDC string
             null, // caller location
             null // MDC properties
             );
-
-    event.setProperty(ACCOUNT_ID, user.getAccountId().toString());
-    event.setProperty(USER_NAME, user.getUserName());
-
-    if (from != null) {
-      event.setProperty(FROM, from);
-    } else {
-      event.setProperty(FROM, canonicalWebUrl);
-    }
-
-    event.setProperty(SRC_PROJECT_NAME, srcProject.get());
-    event.setProperty(TARGET_PROJECT_NAME, targetProject.get());
-
-    if (ex != null) {
-      event.setProperty(ERROR, Throwables.getStackTraceAsString(ex));
-    }
-
     log.callAppenders(event);
 
     audit(user, ts, srcProject, from, ex);
   }
 
+  /** @return the category of an import failure, so that failures can be analysed by category */
+  private static String getErrorCategory(Exception ex) {
+    if (ex instanceof ResourceConflictException) {
+      return "conflict";
+    } else if (ex instanceof NoSuchAccountException) {
+      return "account";
+    } else if (ex instanceof RestApiException) {
+      return "rest";
+    } else if (ex instanceof GitAPIException || ex instanceof TransportException) {
+      return "git";
+    } else if (ex instanceof OrmException) {
+      return "database";
+    } else if (ex instanceof UpdateException || ex instanceof ValidationException) {
+      return "update";
+    } else if (ex instanceof IOException) {
+      return "io";
+    }
+    return "internal";
+  }
+
   private void audit(
       IdentifiedUser user, long ts, Project.NameKey project, String from, Exception ex) {
     ListMultimap<String, Object> params = MultimapBuilder.hashKeys().arrayListValues().build();
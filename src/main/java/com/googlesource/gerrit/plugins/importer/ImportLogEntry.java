@@ -0,0 +1,39 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import java.util.Map;
+
+/** Entry of the import log, formatted as one JSON object per line. */
+class ImportLogEntry {
+  String timestamp;
+  String status;
+  Integer accountId;
+  String userName;
+  String from;
+  String srcProjectName;
+  String targetProjectName;
+  boolean resume;
+  long timeMs;
+  int numChangesCreated;
+  Integer numChangesUpdated;
+  int numRefsUpdated;
+  Long changeQueryBytes;
+  Long gcPackSizeBytes;
+  Map<String, StepStatistic> steps;
+  String errorCategory;
+  String error;
+  String stackTrace;
+}
@@ -0,0 +1,67 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.metrics.Counter0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.Histogram0;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.metrics.Timer0;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+@Singleton
+class ImportMetrics {
+  final Histogram0 pageSize;
+  final Histogram0 pageBytes;
+  final Timer0 pageLatency;
+  final Timer0 mirrorSyncLatency;
+  final Counter0 mirrorSyncFailures;
+
+  @Inject
+  ImportMetrics(MetricMaker metricMaker) {
+    pageSize =
+        metricMaker.newHistogram(
+            "replay/page_size",
+            new Description("Number of changes per page of the change query")
+                .setCumulative()
+                .setUnit("changes"));
+    pageBytes =
+        metricMaker.newHistogram(
+            "replay/page_bytes",
+            new Description("Size of a page of the change query")
+                .setCumulative()
+                .setUnit(Units.BYTES));
+    pageLatency =
+        metricMaker.newTimer(
+            "replay/page_latency",
+            new Description("Latency of the change query for a page")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    mirrorSyncLatency =
+        metricMaker.newTimer(
+            "mirror/sync_latency",
+            new Description("Duration of a scheduled sync of a mirrored project")
+                .setCumulative()
+                .setUnit(Units.MILLISECONDS));
+    mirrorSyncFailures =
+        metricMaker.newCounter(
+            "mirror/sync_failures",
+            new Description("Number of failed scheduled syncs of mirrored projects")
+                .setCumulative()
+                .setUnit("failures"));
+  }
+}
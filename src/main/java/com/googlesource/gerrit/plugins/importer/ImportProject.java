@@ -17,9 +17,13 @@ package com.googlesource.gerrit.plugins.importer;
 import static com.googlesource.gerrit.plugins.importer.ProgressMonitorUtil.updateAndEnd;
 import static java.lang.String.format;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.gerrit.common.Nullable;
+import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.common.errors.NoSuchAccountException;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.restapi.BadRequestException;
 import com.google.gerrit.extensions.restapi.ResourceConflictException;
 import com.google.gerrit.extensions.restapi.RestApiException;
@@ -44,6 +48,11 @@ import com.googlesource.gerrit.plugins.importer.ImportProject.Input;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.internal.storage.file.LockFile;
@@ -51,6 +60,7 @@ import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.TextProgressMonitor;
+import org.eclipse.jgit.transport.RefSpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,11 +72,17 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
     public String user;
     public String pass;
     public String parent;
+    public ImportFilter filter;
+    public boolean dryRun;
 
     private void validateImport() throws BadRequestException {
       if (Strings.isNullOrEmpty(from)) {
         throw new BadRequestException("from is required");
       }
+      if (ProjectArchive.isArchive(from)) {
+        ProjectArchive.validate(from);
+        return;
+      }
       if (Strings.isNullOrEmpty(user)) {
         throw new BadRequestException("user is required");
       }
@@ -98,16 +114,33 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
   private static Logger log = LoggerFactory.getLogger(ImportProject.class);
   private static Version v2_11_2 = new Version("2.11.2");
 
+  /**
+   * Changes that were modified up to this time before the last modified change of the last import
+   * are resumed again, since they may not have been visible in the source system yet.
+   */
+  private static final long INCREMENTAL_MARGIN_MS = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * If more changes need to be fetched, all change refs are fetched since the ref specs for the
+   * single changes would not be cheaper than the full ref advertisement.
+   */
+  private static final int MAX_INCREMENTAL_FETCH_CHANGES = 1000;
+
   private final ProjectCache projectCache;
   private final OpenRepositoryStep openRepoStep;
   private final ConfigureRepositoryStep configRepoStep;
   private final GitFetchStep gitFetchStep;
+  private final LinkObjectsStep linkObjectsStep;
+  private final GarbageCollectionStep gcStep;
+  private final DryRunStep dryRunStep;
   private final ConfigureProjectStep configProjectStep;
   private final ReplayChangesStep.Factory replayChangesFactory;
   private final ImportGroupsStep.Factory importGroupsStepFactory;
   private final GerritApi.Factory apiFactory;
   private final Provider<CurrentUser> currentUser;
   private final ImportJson importJson;
+  private final ImportStatusIndex importStatusIndex;
+  private final ReplayRate replayRate;
   private final ImportLog importLog;
   private final ProjectsCollection projects;
 
@@ -115,6 +148,7 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
   private Project.NameKey srcProject;
   private Project.NameKey parent;
   private boolean force;
+  private boolean incremental;
   private GerritApi api;
 
   private boolean copy;
@@ -126,12 +160,17 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
       OpenRepositoryStep openRepoStep,
       ConfigureRepositoryStep configRepoStep,
       GitFetchStep gitFetchStep,
+      LinkObjectsStep linkObjectsStep,
+      GarbageCollectionStep gcStep,
+      DryRunStep dryRunStep,
       ConfigureProjectStep configProjectStep,
       ReplayChangesStep.Factory replayChangesFactory,
       ImportGroupsStep.Factory importGroupsStepFactory,
       GerritApi.Factory apiFactory,
       Provider<CurrentUser> currentUser,
       ImportJson importJson,
+      ImportStatusIndex importStatusIndex,
+      ReplayRate replayRate,
       ImportLog importLog,
       ProjectsCollection projects,
       @Assisted Project.NameKey targetProject) {
@@ -139,12 +178,17 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
     this.openRepoStep = openRepoStep;
     this.configRepoStep = configRepoStep;
     this.gitFetchStep = gitFetchStep;
+    this.linkObjectsStep = linkObjectsStep;
+    this.gcStep = gcStep;
+    this.dryRunStep = dryRunStep;
     this.configProjectStep = configProjectStep;
     this.replayChangesFactory = replayChangesFactory;
     this.importGroupsStepFactory = importGroupsStepFactory;
     this.apiFactory = apiFactory;
     this.currentUser = currentUser;
     this.importJson = importJson;
+    this.importStatusIndex = importStatusIndex;
+    this.replayRate = replayRate;
     this.importLog = importLog;
     this.projects = projects;
 
@@ -161,15 +205,28 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
     return this;
   }
 
+  /**
+   * @return the {@link ImportStatistic} of the import, or the {@link DryRunStatistic} if {@link
+   *     Input#dryRun} is set
+   */
   @Override
-  public ImportStatistic apply(ConfigResource rsrc, Input input)
+  public Object apply(ConfigResource rsrc, Input input)
       throws RestApiException, OrmException, IOException, ValidationException, GitAPIException,
           NoSuchChangeException, NoSuchAccountException, UpdateException, ConfigInvalidException,
           PermissionBackendException, PatchListNotAvailableException {
     if (input == null) {
       input = new Input();
     }
+    if (input.dryRun) {
+      return dryRun(input);
+    }
+    return importProject(input);
+  }
 
+  ImportStatistic importProject(Input input)
+      throws RestApiException, OrmException, IOException, ValidationException, GitAPIException,
+          NoSuchChangeException, NoSuchAccountException, UpdateException, ConfigInvalidException,
+          PermissionBackendException, PatchListNotAvailableException {
     LockFile lockFile = lockForImport();
     try {
       return apply(lockFile, input, null);
@@ -178,7 +235,13 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
     }
   }
 
-  public ResumeImportStatistic resume(String user, String pass, boolean force, File importStatus)
+  public ResumeImportStatistic resume(
+      String user,
+      String pass,
+      boolean force,
+      boolean incremental,
+      @Nullable ImportFilter filter,
+      File importStatus)
       throws RestApiException, OrmException, IOException, GitAPIException, NoSuchChangeException,
           NoSuchAccountException, UpdateException, ConfigInvalidException,
           PermissionBackendException, PatchListNotAvailableException {
@@ -192,8 +255,10 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
       input.from = info.from;
       input.name = info.name;
       input.parent = info.parent;
+      input.filter = filter != null ? filter : info.filter;
 
       this.force = force;
+      this.incremental = incremental;
 
       return apply(lockFile, input, info);
     } finally {
@@ -206,25 +271,12 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
           NoSuchAccountException, UpdateException, ConfigInvalidException,
           PermissionBackendException, PatchListNotAvailableException {
     boolean resume = info != null;
-    api = apiFactory.create(input.from, input.user, input.pass);
-
-    if (copy) {
-      input.validateCopy();
-    } else {
-      input.validateImport();
-      Version v = api.getVersion();
-      if (v.compareTo(v2_11_2) < 0) {
-        throw new BadRequestException(
-            String.format(
-                "The version of the source Gerrit server %s is too old. "
-                    + "Its version is %s, but required is a version >= %s.",
-                input.from, v.formatted, v2_11_2));
-      }
-    }
+    init(input);
 
     ProgressMonitor pm = err != null ? new TextProgressMonitor(err) : NullProgressMonitor.INSTANCE;
 
     ResumeImportStatistic statistic = new ResumeImportStatistic();
+    long start = System.nanoTime();
     try {
       srcProject =
           !Strings.isNullOrEmpty(input.name) ? new Project.NameKey(input.name) : targetProject;
@@ -232,25 +284,74 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
       setParentProjectName(input, pm);
       checkPreconditions(pm);
       try (Repository repo = openRepoStep.open(targetProject, resume, pm, parent)) {
-        ImportJson.persist(lockFile, importJson.format(input, info), pm);
+        // the query compares the filter with the filter of the last import, which is replaced
+        String query = getQuery(input.filter, info);
+        ImportProjectInfo importInfo = importJson.format(input, info);
+        ImportJson.persist(lockFile, importInfo, pm);
+        importStatusIndex.put(targetProject, importInfo);
         configRepoStep.configure(repo, srcProject, input.from, pm);
-        gitFetchStep.fetch(input.user, input.pass, repo, pm);
+        try (StepTimer t = StepTimer.start(statistic, "fetch")) {
+          if (!copy || !linkObjectsStep.link(srcProject, repo, pm)) {
+            gitFetchStep.fetch(
+                input.user, input.pass, repo, getRefSpecs(input.filter, query, pm), pm);
+          }
+        }
+        try (StepTimer t = StepTimer.start(statistic, "update_refs")) {
+          statistic.numRefsUpdated = gitFetchStep.updateNonChangeRefs(repo);
+        }
         configProjectStep.configure(targetProject, parent, pm);
-        replayChangesFactory
-            .create(input.from, api, repo, srcProject, targetProject, force, resume, statistic, pm)
-            .replay();
+        String origin = api instanceof ArchiveApi ? ((ArchiveApi) api).getUrl() : input.from;
+        ReplayChangesStep replayChangesStep =
+            replayChangesFactory
+                .create(
+                    origin,
+                    api,
+                    repo,
+                    srcProject,
+                    targetProject,
+                    force,
+                    resume,
+                    query,
+                    statistic,
+                    pm)
+                .setCheckpoint(importInfo, getImportStatusFile())
+                .setFilter(input.filter);
+        try (StepTimer t = StepTimer.start(statistic, "replay_changes")) {
+          replayChangesStep.replay();
+        }
+        replayRate.record(statistic);
         if (!copy) {
-          importGroupsStepFactory
-              .create(input.from, input.user, input.pass, targetProject, pm)
-              .importGroups();
+          try (StepTimer t = StepTimer.start(statistic, "import_groups")) {
+            importGroupsStepFactory
+                .create(input.from, input.user, input.pass, targetProject, pm)
+                .importGroups();
+          }
+        }
+        try (StepTimer t = StepTimer.start(statistic, "gc")) {
+          gcStep.gc(repo, statistic, pm);
         }
+        persistCompletion(importInfo, replayChangesStep.getLastUpdated(), pm);
       }
-      importLog.onImport((IdentifiedUser) currentUser.get(), srcProject, targetProject, input.from);
+      statistic.timeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      importLog.onImport(
+          (IdentifiedUser) currentUser.get(),
+          srcProject,
+          targetProject,
+          input.from,
+          resume,
+          statistic);
     } catch (BadRequestException e) {
       throw e;
     } catch (Exception e) {
+      statistic.timeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
       importLog.onImport(
-          (IdentifiedUser) currentUser.get(), srcProject, targetProject, input.from, e);
+          (IdentifiedUser) currentUser.get(),
+          srcProject,
+          targetProject,
+          input.from,
+          resume,
+          statistic,
+          e);
       String msg =
           input.from != null
               ? format(
@@ -264,6 +365,150 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
     return statistic;
   }
 
+  private void init(Input input) throws BadRequestException, IOException {
+    if (input.filter != null) {
+      input.filter.validate();
+    }
+
+    if (copy) {
+      input.validateCopy();
+      api = apiFactory.create(input.from, input.user, input.pass);
+    } else {
+      // validate before the API is created, the archive API resolves the archive URL
+      input.validateImport();
+      api = apiFactory.create(input.from, input.user, input.pass);
+      Version v = api.getVersion();
+      if (v.compareTo(v2_11_2) < 0) {
+        throw new BadRequestException(
+            String.format(
+                "The version of the source Gerrit server %s is too old. "
+                    + "Its version is %s, but required is a version >= %s.",
+                input.from, v.formatted, v2_11_2));
+      }
+    }
+  }
+
+  /**
+   * Computes the size of the import and projects its duration without creating the project or
+   * writing anything else.
+   */
+  private DryRunStatistic dryRun(Input input) throws RestApiException, IOException, OrmException {
+    init(input);
+    ProgressMonitor pm = err != null ? new TextProgressMonitor(err) : NullProgressMonitor.INSTANCE;
+    srcProject =
+        !Strings.isNullOrEmpty(input.name) ? new Project.NameKey(input.name) : targetProject;
+    checkProjectInSource(pm);
+    setParentProjectName(input, pm);
+    checkPreconditions(pm);
+    if (projectCache.get(targetProject) != null) {
+      throw new ResourceConflictException(format("project %s already exists", targetProject.get()));
+    }
+    return dryRunStep.run(api, input, srcProject, getQuery(input.filter, null), pm);
+  }
+
+  /**
+   * Returns the query for the changes that match the filter and that were modified since the last
+   * import.
+   *
+   * <p>Only an incremental resume without force is restricted to the changes that were modified
+   * since the last import, otherwise all changes are walked, so that changes that are missing in
+   * the target system (e.g. because their replay failed) are imported. A resume with a filter that
+   * differs from the filter of the last import is not incremental either, since changes that were
+   * modified before the last import may only match the new filter.
+   *
+   * @return the query, {@code null} if all changes should be imported
+   */
+  @Nullable
+  private String getQuery(@Nullable ImportFilter filter, @Nullable ImportProjectInfo info) {
+    List<String> query = new ArrayList<>(2);
+    if (filter != null && filter.toQuery() != null) {
+      query.add(filter.toQuery());
+    }
+    if (info != null
+        && incremental
+        && !force
+        && info.lastUpdated != null
+        && Objects.equals(filter, info.filter)) {
+      Timestamp after = new Timestamp(info.lastUpdated.getTime() - INCREMENTAL_MARGIN_MS);
+      query.add("after:\"" + ImportFilter.formatQueryTimestamp(after) + "\"");
+    }
+    return query.isEmpty() ? null : Joiner.on(' ').join(query);
+  }
+
+  /**
+   * Returns the ref specs to fetch only the refs of the changes that match the query (changes that
+   * match the filter and were modified since the last import), plus the branches that match the
+   * filter, tags, meta refs and notes.
+   *
+   * <p>Without this, the fetch uses {@code +refs/*:refs/imports/*} and the ref advertisement and
+   * the update of the tracking refs cover every change ref of the project. This dominates a resume
+   * that only has a small delta and an import that only needs some of the changes.
+   *
+   * @return the ref specs, {@code null} if all refs should be fetched
+   */
+  @Nullable
+  private List<RefSpec> getRefSpecs(
+      @Nullable ImportFilter filter, @Nullable String query, ProgressMonitor pm)
+      throws BadRequestException, IOException {
+    if (query == null || api instanceof ArchiveApi) {
+      return null;
+    }
+    List<String> branchRefs = filter != null ? filter.getBranchRefs() : null;
+    pm.beginTask("Query changes to fetch", ProgressMonitor.UNKNOWN);
+    List<ChangeInfo> matching = new ArrayList<>();
+    int start = 0;
+    for (; ; ) {
+      List<ChangeInfo> changes =
+          api.queryChangeSummaries(
+              srcProject.get(), query, start, GlobalCapability.DEFAULT_MAX_QUERY_LIMIT);
+      if (changes.isEmpty()) {
+        break;
+      }
+      start += changes.size();
+      for (ChangeInfo c : changes) {
+        if (filter == null || filter.matches(c)) {
+          if (filter != null) {
+            filter.trimRevisions(c);
+          }
+          matching.add(c);
+        }
+      }
+      pm.update(changes.size());
+      if (matching.size() > MAX_INCREMENTAL_FETCH_CHANGES) {
+        pm.endTask();
+        // fetch all refs if there is no filter, so that refs in other namespaces are updated
+        return filter != null ? GitFetchStep.refSpecs(branchRefs, null) : null;
+      }
+      if (!Boolean.TRUE.equals(changes.get(changes.size() - 1)._moreChanges)) {
+        break;
+      }
+    }
+    pm.endTask();
+    return GitFetchStep.refSpecs(branchRefs, matching);
+  }
+
+  /** Records the last modified change and removes the checkpoint after a successful import. */
+  private void persistCompletion(
+      ImportProjectInfo importInfo, @Nullable Timestamp lastUpdated, ProgressMonitor pm)
+      throws IOException {
+    boolean updateLastUpdated =
+        lastUpdated != null
+            && (importInfo.lastUpdated == null || importInfo.lastUpdated.before(lastUpdated));
+    if (!updateLastUpdated && importInfo.checkpoint == null) {
+      return;
+    }
+    if (updateLastUpdated) {
+      importInfo.lastUpdated = lastUpdated;
+    }
+    importInfo.checkpoint = null;
+    ImportJson.update(getImportStatusFile(), importInfo, pm);
+    importStatusIndex.put(targetProject, importInfo);
+  }
+
+  private File getImportStatusFile() {
+    return projects.FS_LAYOUT.getImportStatusFile(targetProject.get());
+  }
+
   private void checkProjectInSource(ProgressMonitor pm) throws IOException, BadRequestException {
     pm.beginTask("Check source project", 1);
     api.getProject(srcProject.get());
@@ -299,8 +544,7 @@ class ImportProject implements RestModifyView<ConfigResource, Input> {
   }
 
   private LockFile lockForImport() throws ResourceConflictException {
-    File importStatus = projects.FS_LAYOUT.getImportStatusFile(targetProject.get());
-    LockFile lockFile = new LockFile(importStatus);
+    LockFile lockFile = new LockFile(getImportStatusFile());
     try {
       if (lockFile.lock()) {
         return lockFile;
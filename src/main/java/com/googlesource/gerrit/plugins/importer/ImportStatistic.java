@@ -14,6 +14,14 @@
 
 package com.googlesource.gerrit.plugins.importer;
 
+import java.util.Map;
+
 class ImportStatistic {
   int numChangesCreated;
+  int numRefsUpdated;
+  Long changeQueryBytes;
+  Long gcTimeMs;
+  Long gcPackSizeBytes;
+  long timeMs;
+  Map<String, StepStatistic> steps;
 }
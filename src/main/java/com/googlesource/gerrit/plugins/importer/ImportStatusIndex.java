@@ -0,0 +1,85 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.common.io.Files;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory index of the import files, sorted by the name of the target project.
+ *
+ * <p>The import files are read once, when the index is accessed for the first time. Afterwards the
+ * index is kept up to date by the imports that write the import files and by the completion of
+ * imports that deletes them, so that listing the imports neither walks the plugin data directory
+ * nor parses the import files. Import files that are modified by other means (e.g. manually) are
+ * only seen after a restart of the plugin.
+ *
+ * <p>The index holds copies of the import infos, so that listing the imports never sees an import
+ * info that a running import is modifying. Imports replace the copy whenever they write the import
+ * file.
+ */
+@Singleton
+class ImportStatusIndex {
+  private final Provider<ProjectsCollection> projects;
+  private NavigableMap<String, ImportProjectInfo> imports;
+
+  @Inject
+  ImportStatusIndex(Provider<ProjectsCollection> projects) {
+    this.projects = projects;
+  }
+
+  /** @return the imports as an unmodifiable map that maps the target project name to the import */
+  NavigableMap<String, ImportProjectInfo> all() throws IOException {
+    return Collections.unmodifiableNavigableMap(load());
+  }
+
+  /**
+   * Stores a copy of the import info, later modifications of the given import info are not visible
+   * in the index until it is put again.
+   */
+  synchronized void put(Project.NameKey project, ImportProjectInfo info) {
+    if (imports != null) {
+      imports.put(project.get(), ImportJson.copy(info));
+    }
+  }
+
+  synchronized void remove(Project.NameKey project) {
+    if (imports != null) {
+      imports.remove(project.get());
+    }
+  }
+
+  private synchronized NavigableMap<String, ImportProjectInfo> load() throws IOException {
+    if (imports == null) {
+      ProjectsCollection.FileSystemLayout fsLayout = projects.get().FS_LAYOUT;
+      NavigableMap<String, ImportProjectInfo> m = new ConcurrentSkipListMap<>();
+      for (File f : Files.fileTreeTraverser().preOrderTraversal(fsLayout.getLockRoot())) {
+        if (fsLayout.isImportStatusFile(f)) {
+          m.put(fsLayout.resolveProjectName(f), ImportJson.parse(f));
+        }
+      }
+      imports = m;
+    }
+    return imports;
+  }
+}
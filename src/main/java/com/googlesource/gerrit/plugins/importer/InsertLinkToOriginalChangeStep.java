@@ -48,10 +48,15 @@ class InsertLinkToOriginalChangeStep {
   private final Change change;
   private final ChangeInfo changeInfo;
   private final boolean resume;
+  private final IdMappingLog changeMapping;
 
   interface Factory {
     InsertLinkToOriginalChangeStep create(
-        @Nullable String fromGerrit, Change change, ChangeInfo changeInfo, boolean resume);
+        @Nullable String fromGerrit,
+        Change change,
+        ChangeInfo changeInfo,
+        boolean resume,
+        IdMappingLog changeMapping);
   }
 
   @Inject
@@ -66,7 +71,8 @@ class InsertLinkToOriginalChangeStep {
       @Assisted @Nullable String fromGerrit,
       @Assisted Change change,
       @Assisted ChangeInfo changeInfo,
-      @Assisted boolean resume) {
+      @Assisted boolean resume,
+      @Assisted IdMappingLog changeMapping) {
     this.currentUser = currentUser;
     this.updateFactory = updateFactory;
     this.genericUserFactory = genericUserFactory;
@@ -78,11 +84,17 @@ class InsertLinkToOriginalChangeStep {
     this.change = change;
     this.changeInfo = changeInfo;
     this.resume = resume;
+    this.changeMapping = changeMapping;
   }
 
+  /**
+   * Inserts the link to the original change and records the original change number in the change
+   * mapping of the project.
+   */
   void insert() throws NoSuchChangeException, OrmException, IOException {
     insertMessage(
         change, (resume ? "Resumed import of " : "Imported from ") + changeUrl(changeInfo));
+    changeMapping.put(Integer.toString(changeInfo._number), change.getId().get());
   }
 
   private String changeUrl(ChangeInfo c) {
@@ -0,0 +1,209 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import static com.googlesource.gerrit.plugins.importer.ProgressMonitorUtil.updateAndEnd;
+
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.git.GitRepositoryManager;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.jgit.internal.storage.file.FileRepository;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fast path for project copies within one server.
+ *
+ * <p>Instead of fetching from the source repository, which rewrites every object, the pack files
+ * and loose objects of the source repository are hardlinked into the target repository (or copied
+ * if the file system doesn't support hardlinks) and the source refs are created under {@link
+ * ConfigureRepositoryStep#R_IMPORTS}. The linked packs are kept as they are until the target
+ * repository is garbage collected.
+ */
+@Singleton
+class LinkObjectsStep {
+  private static final Logger log = LoggerFactory.getLogger(LinkObjectsStep.class);
+
+  private final GitRepositoryManager repoManager;
+
+  @Inject
+  LinkObjectsStep(GitRepositoryManager repoManager) {
+    this.repoManager = repoManager;
+  }
+
+  /**
+   * Links the objects of the source project into the target repository.
+   *
+   * @param srcProject the project that is copied
+   * @param repo the target repository
+   * @param pm progress monitor
+   * @return {@code true} if the objects and refs have been linked, {@code false} if the
+   *     repositories are not file based or if objects are missing after linking (e.g. because the
+   *     source repository was repacked concurrently), in this case the objects must be fetched
+   * @throws IOException thrown if linking fails
+   */
+  boolean link(Project.NameKey srcProject, Repository repo, ProgressMonitor pm)
+      throws IOException {
+    try (Repository srcRepo = repoManager.openRepository(srcProject)) {
+      if (!(srcRepo instanceof FileRepository) || !(repo instanceof FileRepository)) {
+        return false;
+      }
+
+      Map<String, Ref> refs = srcRepo.getRefDatabase().getRefs(RefDatabase.ALL);
+      Path src = ((FileRepository) srcRepo).getObjectsDirectory().toPath();
+      Path dst = ((FileRepository) repo).getObjectsDirectory().toPath();
+      pm.beginTask("Link objects", ProgressMonitor.UNKNOWN);
+      linkPacks(src.resolve("pack"), dst.resolve("pack"), pm);
+      linkLooseObjects(src, dst, pm);
+      pm.endTask();
+
+      for (Ref ref : refs.values()) {
+        if (ref.getObjectId() != null && !repo.hasObject(ref.getObjectId())) {
+          log.warn(
+              String.format(
+                  "Object %s of ref %s missing after linking objects of project %s,"
+                      + " fetching objects instead.",
+                  ref.getObjectId().name(), ref.getName(), srcProject.get()));
+          return false;
+        }
+      }
+
+      pm.beginTask("Create import refs", 1);
+      createImportRefs(repo, refs.values());
+      updateAndEnd(pm);
+      return true;
+    }
+  }
+
+  private static void linkPacks(Path src, Path dst, ProgressMonitor pm) throws IOException {
+    if (!Files.isDirectory(src)) {
+      return;
+    }
+    Files.createDirectories(dst);
+    List<Path> packs = new ArrayList<>();
+    List<Path> indexes = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(src, "pack-*.{pack,idx,bitmap}")) {
+      for (Path f : files) {
+        if (f.toString().endsWith(".pack")) {
+          packs.add(f);
+        } else {
+          indexes.add(f);
+        }
+      }
+    }
+    // link the indexes before the packs so that a pack is never visible without its index
+    for (Path f : indexes) {
+      link(f, dst.resolve(f.getFileName()), pm);
+    }
+    for (Path f : packs) {
+      link(f, dst.resolve(f.getFileName()), pm);
+    }
+  }
+
+  private static void linkLooseObjects(Path src, Path dst, ProgressMonitor pm)
+      throws IOException {
+    try (DirectoryStream<Path> dirs = Files.newDirectoryStream(src, "[0-9a-f][0-9a-f]")) {
+      for (Path dir : dirs) {
+        Path dstDir = dst.resolve(dir.getFileName());
+        Files.createDirectories(dstDir);
+        try (DirectoryStream<Path> objects = Files.newDirectoryStream(dir)) {
+          for (Path f : objects) {
+            link(f, dstDir.resolve(f.getFileName()), pm);
+          }
+        }
+      }
+    }
+  }
+
+  private static void link(Path src, Path dst, ProgressMonitor pm) throws IOException {
+    if (Files.exists(dst)) {
+      // already linked by a previous copy
+      return;
+    }
+    try {
+      Files.createLink(dst, src);
+    } catch (FileAlreadyExistsException e) {
+      return;
+    } catch (IOException | UnsupportedOperationException e) {
+      // hardlinks are not supported, e.g. source and target are on different devices
+      Files.copy(src, dst);
+    }
+    pm.update(1);
+  }
+
+  private static void createImportRefs(Repository repo, Collection<Ref> srcRefs)
+      throws IOException {
+    RefDatabase refDb = repo.getRefDatabase();
+    BatchRefUpdate bru = refDb.newBatchUpdate();
+    bru.setAllowNonFastForwards(true);
+    for (Ref ref : srcRefs) {
+      if (ref.isSymbolic()
+          || ref.getObjectId() == null
+          || !ref.getName().startsWith(Constants.R_REFS)
+          || ref.getName().startsWith(ConfigureRepositoryStep.R_IMPORTS)) {
+        continue;
+      }
+      String name =
+          ConfigureRepositoryStep.R_IMPORTS + ref.getName().substring(Constants.R_REFS.length());
+      Ref old = refDb.exactRef(name);
+      ObjectId oldId = old != null ? old.getObjectId() : ObjectId.zeroId();
+      if (oldId.equals(ref.getObjectId())) {
+        continue;
+      }
+      bru.addCommand(
+          new ReceiveCommand(
+              oldId,
+              ref.getObjectId(),
+              name,
+              old != null
+                  ? ReceiveCommand.Type.UPDATE_NONFASTFORWARD
+                  : ReceiveCommand.Type.CREATE));
+    }
+    if (bru.getCommands().isEmpty()) {
+      return;
+    }
+    try (RevWalk rw = new RevWalk(repo)) {
+      bru.execute(rw, NullProgressMonitor.INSTANCE);
+    }
+    for (ReceiveCommand cmd : bru.getCommands()) {
+      if (cmd.getResult() != ReceiveCommand.Result.OK) {
+        throw new IOException(
+            String.format(
+                "Failed to update %s, ReceiveCommand.Result = %s",
+                cmd.getRefName(), cmd.getResult()));
+      }
+    }
+  }
+}
@@ -14,27 +14,20 @@
 
 package com.googlesource.gerrit.plugins.importer;
 
-import com.google.common.collect.Maps;
-import com.google.common.io.Files;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
 import com.google.gerrit.extensions.restapi.RestReadView;
 import com.google.gerrit.server.config.ConfigResource;
 import com.google.inject.Inject;
-import com.google.inject.Singleton;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import org.kohsuke.args4j.Option;
 
-@Singleton
 @RequiresCapability(ImportCapability.ID)
 public class ListImportedProjects implements RestReadView<ConfigResource> {
 
-  private final ProjectsCollection projects;
+  private final ImportStatusIndex index;
 
   @Option(
       name = "--match",
@@ -44,37 +37,60 @@ public class ListImportedProjects implements RestReadView<ConfigResource> {
     this.match = match.toLowerCase(Locale.ENGLISH);
   }
 
+  @Option(
+      name = "--limit",
+      aliases = {"-n"},
+      metaVar = "CNT",
+      usage = "maximum number of projects to list")
+  public void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  @Option(
+      name = "--start",
+      aliases = {"-S"},
+      metaVar = "CNT",
+      usage = "number of projects to skip")
+  public void setStart(int start) {
+    this.start = start;
+  }
+
   private String match;
+  private int limit;
+  private int start;
 
   @Inject
-  ListImportedProjects(ProjectsCollection projects) {
-    this.projects = projects;
+  ListImportedProjects(ImportStatusIndex index) {
+    this.index = index;
   }
 
+  /**
+   * Lists the imported projects sorted by name.
+   *
+   * <p>The imports are read from the {@link ImportStatusIndex}, they are filtered by the match and
+   * paginated by start and limit before they are returned.
+   */
   @Override
   public Map<String, ImportProjectInfo> apply(ConfigResource rsrc) throws IOException {
-    Map<String, ImportProjectInfo> importedProjects = Maps.newTreeMap();
-    for (File f : listImportFiles()) {
-      importedProjects.put(projects.FS_LAYOUT.resolveProjectName(f), ImportJson.parse(f));
-    }
-    return importedProjects;
-  }
-
-  private Collection<File> listImportFiles() {
-    Collection<File> importFiles = new HashSet<>();
-    File lockRoot = projects.FS_LAYOUT.getLockRoot();
-    Path lockRootPath = lockRoot.toPath();
-    for (File f : Files.fileTreeTraverser().preOrderTraversal(lockRoot)) {
-      if (f.isFile()
-          && !f.getName().endsWith(".lock")
-          && matches(lockRootPath.relativize(f.toPath()))) {
-        importFiles.add(f);
+    Map<String, ImportProjectInfo> importedProjects = new LinkedHashMap<>();
+    int skip = start;
+    for (Map.Entry<String, ImportProjectInfo> e : index.all().entrySet()) {
+      if (limit > 0 && importedProjects.size() >= limit) {
+        break;
       }
+      if (!matches(e.getKey())) {
+        continue;
+      }
+      if (skip > 0) {
+        skip--;
+        continue;
+      }
+      importedProjects.put(e.getKey(), e.getValue());
     }
-    return importFiles;
+    return importedProjects;
   }
 
-  private boolean matches(Path p) {
-    return match == null || p.toString().toLowerCase(Locale.ENGLISH).contains(match);
+  private boolean matches(String name) {
+    return match == null || name.toLowerCase(Locale.ENGLISH).contains(match);
   }
 }
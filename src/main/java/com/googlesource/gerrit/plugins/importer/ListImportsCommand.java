@@ -44,6 +44,20 @@ class ListProjectImportsCommand extends SshCommand {
       usage = "List only projects containing this substring, case insensitive")
   private String match;
 
+  @Option(
+      name = "--limit",
+      aliases = {"-n"},
+      metaVar = "CNT",
+      usage = "maximum number of projects to list")
+  private int limit;
+
+  @Option(
+      name = "--start",
+      aliases = {"-S"},
+      metaVar = "CNT",
+      usage = "number of projects to skip")
+  private int start;
+
   @Inject private ListImportedProjects list;
 
   @Override
@@ -51,6 +65,8 @@ class ListProjectImportsCommand extends SshCommand {
     if (match != null) {
       list.setMatch(match);
     }
+    list.setLimit(limit);
+    list.setStart(start);
 
     Map<String, ImportProjectInfo> imports = list.apply(new ConfigResource());
     for (Map.Entry<String, ImportProjectInfo> e : imports.entrySet()) {
@@ -0,0 +1,296 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.common.TimeUtil;
+import com.google.gerrit.extensions.annotations.PluginName;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.extensions.registration.RegistrationHandle;
+import com.google.gerrit.extensions.restapi.ResourceConflictException;
+import com.google.gerrit.extensions.restapi.ResourceNotFoundException;
+import com.google.gerrit.metrics.CallbackMetric0;
+import com.google.gerrit.metrics.Description;
+import com.google.gerrit.metrics.Description.Units;
+import com.google.gerrit.metrics.MetricMaker;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Project;
+import com.google.gerrit.server.config.ConfigUtil;
+import com.google.gerrit.server.config.PluginConfigFactory;
+import com.google.gerrit.server.git.WorkQueue;
+import com.google.gerrit.server.securestore.SecureStore;
+import com.google.gerrit.server.util.ManualRequestContext;
+import com.google.gerrit.server.util.OneOffRequestContext;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jgit.lib.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically resumes the imports of the projects that are configured as mirrors.
+ *
+ * <p>Mirrors are configured in {@code etc/@PLUGIN@.config}, one {@code mirror} subsection per
+ * target project. The passwords for the source system are read from the secure store ({@code
+ * etc/@PLUGIN@.secure.config}). Each mirror is resumed incrementally, so that only the changes
+ * that were modified since the last import or sync are replayed. The resume is done as the user
+ * that did the last import of the project. If a sync fails, the interval until the next sync is
+ * doubled up to the configured maximum backoff, a sync that is skipped because the project is
+ * currently imported from another session is not counted as failure.
+ */
+@Singleton
+class MirrorScheduler implements LifecycleListener {
+  private static final Logger log = LoggerFactory.getLogger(MirrorScheduler.class);
+
+  private static final String SECTION_MIRROR = "mirror";
+  private static final long DEFAULT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(15);
+  private static final long DEFAULT_MAX_BACKOFF_MS = TimeUnit.HOURS.toMillis(6);
+  private static final int DEFAULT_THREADS = 1;
+
+  private final WorkQueue workQueue;
+  private final OneOffRequestContext requestContext;
+  private final ImportProject.Factory importProjectFactory;
+  private final ProjectsCollection projects;
+  private final ImportMetrics metrics;
+  private final MetricMaker metricMaker;
+  private final PluginConfigFactory cfgFactory;
+  private final SecureStore secureStore;
+  private final String pluginName;
+  private final Map<Project.NameKey, MirrorTask> tasks = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService executor;
+  private CallbackMetric0<Long> lagMetric;
+  private RegistrationHandle lagTrigger;
+
+  @Inject
+  MirrorScheduler(
+      WorkQueue workQueue,
+      OneOffRequestContext requestContext,
+      ImportProject.Factory importProjectFactory,
+      ProjectsCollection projects,
+      ImportMetrics metrics,
+      MetricMaker metricMaker,
+      PluginConfigFactory cfgFactory,
+      SecureStore secureStore,
+      @PluginName String pluginName) {
+    this.workQueue = workQueue;
+    this.requestContext = requestContext;
+    this.importProjectFactory = importProjectFactory;
+    this.projects = projects;
+    this.metrics = metrics;
+    this.metricMaker = metricMaker;
+    this.cfgFactory = cfgFactory;
+    this.secureStore = secureStore;
+    this.pluginName = pluginName;
+  }
+
+  @Override
+  public void start() {
+    Config cfg = cfgFactory.getGlobalPluginConfig(pluginName);
+    if (cfg.getSubsections(SECTION_MIRROR).isEmpty()) {
+      return;
+    }
+
+    executor =
+        workQueue.createQueue(
+            cfg.getInt(SECTION_MIRROR, "threads", DEFAULT_THREADS), "Import-Mirror");
+    for (String name : cfg.getSubsections(SECTION_MIRROR)) {
+      long interval =
+          ConfigUtil.getTimeUnit(
+              cfg, SECTION_MIRROR, name, "interval", DEFAULT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      long maxBackoff =
+          ConfigUtil.getTimeUnit(
+              cfg,
+              SECTION_MIRROR,
+              name,
+              "maxBackoff",
+              DEFAULT_MAX_BACKOFF_MS,
+              TimeUnit.MILLISECONDS);
+      Project.NameKey project = new Project.NameKey(name);
+      MirrorTask task =
+          new MirrorTask(
+              project,
+              cfg.getString(SECTION_MIRROR, name, "user"),
+              secureStore.getForPlugin(pluginName, SECTION_MIRROR, name, "password"),
+              Math.max(interval, 1),
+              Math.max(maxBackoff, interval),
+              getLastImport(project));
+      tasks.put(task.project, task);
+      task.schedule(interval);
+    }
+
+    final CallbackMetric0<Long> metric =
+        metricMaker.newCallbackMetric(
+            "mirror/lag",
+            Long.class,
+            new Description(
+                    "Time since the start of the last successful sync of the mirror that lags"
+                        + " behind the most")
+                .setGauge()
+                .setUnit(Units.MILLISECONDS));
+    lagMetric = metric;
+    lagTrigger =
+        metricMaker.newTrigger(
+            metric,
+            new Runnable() {
+              @Override
+              public void run() {
+                long now = TimeUtil.nowMs();
+                long lag = 0;
+                for (MirrorTask task : tasks.values()) {
+                  lag = Math.max(lag, now - task.lastSync);
+                }
+                metric.set(lag);
+              }
+            });
+  }
+
+  /**
+   * Returns the start time of the last import or sync of a project, so that the lag of a mirror is
+   * also known before its first sync after a restart.
+   */
+  private long getLastImport(Project.NameKey project) {
+    try {
+      List<ImportInfo> imports = projects.parse(project.get()).getInfo().imports;
+      if (imports != null && !imports.isEmpty()) {
+        Timestamp last = imports.get(imports.size() - 1).timestamp;
+        if (last != null) {
+          return last.getTime();
+        }
+      }
+    } catch (ResourceNotFoundException | IOException e) {
+      log.warn(String.format("Cannot read import file of mirrored project %s", project.get()), e);
+    }
+    return TimeUtil.nowMs();
+  }
+
+  @Override
+  public void stop() {
+    if (lagTrigger != null) {
+      lagTrigger.remove();
+      lagTrigger = null;
+    }
+    if (lagMetric != null) {
+      lagMetric.remove();
+      lagMetric = null;
+    }
+    if (executor != null) {
+      // the work queue drops the queue once it is terminated
+      executor.shutdownNow();
+      executor = null;
+    }
+    tasks.clear();
+  }
+
+  private class MirrorTask implements Runnable {
+    private final Project.NameKey project;
+    private final String user;
+    private final String password;
+    private final long interval;
+    private final long maxBackoff;
+    private volatile long lastSync;
+    private int failures;
+
+    MirrorTask(
+        Project.NameKey project,
+        String user,
+        String password,
+        long interval,
+        long maxBackoff,
+        long lastSync) {
+      this.project = project;
+      this.user = user;
+      this.password = password;
+      this.interval = interval;
+      this.maxBackoff = maxBackoff;
+      this.lastSync = lastSync;
+    }
+
+    @Override
+    public void run() {
+      long start = TimeUtil.nowMs();
+      try {
+        sync();
+        failures = 0;
+        lastSync = start;
+        metrics.mirrorSyncLatency.record(TimeUtil.nowMs() - start, TimeUnit.MILLISECONDS);
+      } catch (ResourceNotFoundException e) {
+        log.warn(
+            String.format(
+                "Project %s is not imported or its import was completed, stop mirroring",
+                project.get()));
+        tasks.remove(project);
+        return;
+      } catch (ResourceConflictException e) {
+        log.info(
+            String.format(
+                "Project %s is being imported from another session, skipping sync",
+                project.get()));
+      } catch (Exception e) {
+        failures++;
+        metrics.mirrorSyncFailures.increment();
+        log.error(String.format("Failed to sync mirror of project %s", project.get()), e);
+      }
+      schedule(nextDelay());
+    }
+
+    private void sync() throws Exception {
+      ImportProjectResource rsrc = projects.parse(project.get());
+      ImportProjectInfo info = rsrc.getInfo();
+      try (ManualRequestContext ctx = requestContext.openAs(getLastImporter(info))) {
+        importProjectFactory
+            .create(project)
+            .setCopy(info.from == null)
+            .resume(user, password, false, true, null, rsrc.getImportStatus());
+      }
+    }
+
+    private Account.Id getLastImporter(ImportProjectInfo info) {
+      List<ImportInfo> imports = info.imports;
+      if (imports == null || imports.isEmpty()) {
+        throw new IllegalStateException(
+            String.format("Import file of project %s has no imports", project.get()));
+      }
+      return new Account.Id(imports.get(imports.size() - 1).user._accountId);
+    }
+
+    /** @return the delay until the next sync, doubled for every consecutive failure */
+    private long nextDelay() {
+      if (failures == 0) {
+        return interval;
+      }
+      long delay = interval << Math.min(failures, 30);
+      return delay > 0 ? Math.min(delay, maxBackoff) : maxBackoff;
+    }
+
+    private void schedule(long delay) {
+      ScheduledExecutorService e = executor;
+      if (e != null && !e.isShutdown()) {
+        e.schedule(this, delay, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return String.format("[%s] Mirror project %s", pluginName, project.get());
+    }
+  }
+}
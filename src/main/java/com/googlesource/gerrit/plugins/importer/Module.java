@@ -52,6 +52,7 @@ class Module extends FactoryModule {
 
             put(PROJECT_KIND, "copy").to(CopyProject.class);
             put(PROJECT_KIND, "copy.resume").to(ResumeCopyProject.class);
+            put(PROJECT_KIND, "export").to(ExportProject.class);
             put(PROJECT_KIND, "import.resume").to(ResumeProjectImport.OnProjects.class);
             post(PROJECT_KIND, "delete").to(CompleteProjectImport.OnProjects.class);
 
@@ -59,11 +60,22 @@ class Module extends FactoryModule {
           }
         });
     bind(LifecycleListener.class).annotatedWith(UniqueAnnotations.create()).to(ImportLog.class);
+    bind(LifecycleListener.class)
+        .annotatedWith(UniqueAnnotations.create())
+        .to(MirrorScheduler.class);
     bind(OpenRepositoryStep.class);
     bind(ConfigureRepositoryStep.class);
     bind(ConfigureProjectStep.class);
     bind(GitFetchStep.class);
+    bind(LinkObjectsStep.class);
+    bind(GarbageCollectionStep.class);
+    bind(DryRunStep.class);
+    bind(GroupImportPlanner.class);
+    bind(ImportMetrics.class);
     bind(AccountUtil.class);
+    bind(IdMappingStore.class);
+    bind(ImportStatusIndex.class);
+    bind(ReplayRate.class);
     factory(ImportProject.Factory.class);
     factory(ReplayChangesStep.Factory.class);
     factory(ReplayRevisionsStep.Factory.class);
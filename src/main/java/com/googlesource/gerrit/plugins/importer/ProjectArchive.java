@@ -0,0 +1,89 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.extensions.common.ChangeInfo;
+import com.google.gerrit.extensions.common.CommentInfo;
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.common.ProjectInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import java.io.File;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Layout of a project archive as written by {@link ExportProject}.
+ *
+ * <p>A project archive is a directory that contains the repository as a git bundle and a newline
+ * delimited JSON stream with one {@link Entry} per line. The stream starts with a header entry,
+ * followed by one entry per group and one entry per change.
+ */
+class ProjectArchive {
+  static final String SCHEME = "file:";
+  static final String BUNDLE_FILE = "project.bundle";
+  static final String DATA_FILE = "project.json";
+
+  static class Entry {
+    String version;
+    String url;
+    ProjectInfo project;
+    GroupInfo group;
+    ChangeInfo change;
+    Map<String, List<CommentInfo>> comments;
+  }
+
+  private ProjectArchive() {
+    // To prevent getting instances.
+  }
+
+  static boolean isArchive(String url) {
+    return url != null && url.startsWith(SCHEME);
+  }
+
+  /**
+   * Checks that the URL is an absolute {@code file:} URL of a directory that contains the bundle
+   * and the data file of a project archive.
+   */
+  static void validate(String url) throws BadRequestException {
+    File dir;
+    try {
+      dir = getDirectory(url);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException(
+          String.format("invalid project archive URL %s: %s", url, e.getMessage()));
+    }
+    if (!dir.isDirectory()) {
+      throw new BadRequestException(String.format("project archive %s not found", url));
+    }
+    if (!new File(dir, BUNDLE_FILE).isFile() || !new File(dir, DATA_FILE).isFile()) {
+      throw new BadRequestException(
+          String.format(
+              "%s is not a project archive, %s or %s is missing", url, BUNDLE_FILE, DATA_FILE));
+    }
+  }
+
+  static File getDirectory(String url) {
+    return new File(URI.create(url));
+  }
+
+  static File getBundleFile(String url) {
+    return new File(getDirectory(url), BUNDLE_FILE);
+  }
+
+  static File getDataFile(String url) {
+    return new File(getDirectory(url), DATA_FILE);
+  }
+}
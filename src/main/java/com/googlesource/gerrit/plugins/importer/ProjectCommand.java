@@ -26,10 +26,10 @@ import com.google.gerrit.server.project.NoSuchChangeException;
 import com.google.gerrit.server.update.UpdateException;
 import com.google.gerrit.server.validators.ValidationException;
 import com.google.gerrit.sshd.CommandMetaData;
-import com.google.gerrit.sshd.SshCommand;
 import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.kohsuke.args4j.Argument;
@@ -37,13 +37,15 @@ import org.kohsuke.args4j.Option;
 
 @RequiresCapability(ImportCapability.ID)
 @CommandMetaData(name = "project", description = "Imports a project")
-public class ProjectCommand extends SshCommand {
+public class ProjectCommand extends ImportFilterCommand {
   @Option(
       name = "--from",
       aliases = {"-f"},
       required = true,
       metaVar = "URL",
-      usage = "URL of the remote system from where the project should be imported")
+      usage =
+          "URL of the remote system from where the project should be imported,"
+              + " or file URL of a project archive")
   private String url;
 
   @Option(
@@ -58,7 +60,7 @@ public class ProjectCommand extends SshCommand {
   @Option(
       name = "--user",
       aliases = {"-u"},
-      required = true,
+      required = false,
       metaVar = "NAME",
       usage = "user on remote system")
   private String user;
@@ -66,7 +68,7 @@ public class ProjectCommand extends SshCommand {
   @Option(
       name = "--pass",
       aliases = {"-p"},
-      required = true,
+      required = false,
       metaVar = "-|PASS",
       usage = "password of remote user")
   private String pass;
@@ -78,6 +80,11 @@ public class ProjectCommand extends SshCommand {
       usage = "name of parent project in target system")
   private String parent;
 
+  @Option(
+      name = "--dry-run",
+      usage = "only compute the size and the projected duration of the import, nothing is imported")
+  private boolean dryRun;
+
   @Option(name = "--quiet", usage = "suppress progress messages")
   private boolean quiet;
 
@@ -103,16 +110,51 @@ public class ProjectCommand extends SshCommand {
     if (!Strings.isNullOrEmpty(parent)) {
       input.parent = parent;
     }
+    input.dryRun = dryRun;
 
     try {
+      input.filter = getFilter();
       ImportProject importer = importProjectFactory.create(new Project.NameKey(project));
       if (!quiet) {
         importer.setErr(stderr);
       }
-      ImportStatistic stats = importer.apply(new ConfigResource(), input);
+      Object result = importer.apply(new ConfigResource(), input);
+      if (result instanceof DryRunStatistic) {
+        printDryRunStatistic((DryRunStatistic) result);
+        return;
+      }
+      ImportStatistic stats = (ImportStatistic) result;
       stdout.print("Created Changes: " + stats.numChangesCreated + "\n");
     } catch (RestApiException e) {
       throw die(e.getMessage());
     }
   }
+
+  private void printDryRunStatistic(DryRunStatistic stats) {
+    stdout.print("Changes: " + stats.numChanges + "\n");
+    stdout.print("Revisions: " + stats.numRevisions + "\n");
+    stdout.print("Messages: " + stats.numMessages + "\n");
+    stdout.print("Approvals: " + stats.numApprovals + "\n");
+    stdout.print(
+        "Comments: "
+            + stats.numComments
+            + (stats.numSampledChanges < stats.numChanges ? " (estimated)" : "")
+            + "\n");
+    stdout.print("Accounts to create: " + stats.numAccountsToCreate + "\n");
+    stdout.print("Refs: " + (stats.numRefs != null ? stats.numRefs : "unknown") + "\n");
+    stdout.print(
+        "Pack size: "
+            + (stats.packSizeBytes != null ? stats.packSizeBytes + " bytes" : "unknown")
+            + "\n");
+    if (stats.estimatedWriteDurationMs != null) {
+      stdout.print(
+          "Estimated write duration: "
+              + TimeUnit.MILLISECONDS.toSeconds(stats.estimatedWriteDurationMs)
+              + " seconds\n");
+    }
+    stdout.print(
+        "Estimated duration: "
+            + TimeUnit.MILLISECONDS.toSeconds(stats.estimatedDurationMs)
+            + " seconds\n");
+  }
 }
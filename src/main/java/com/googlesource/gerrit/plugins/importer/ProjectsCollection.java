@@ -43,6 +43,8 @@ public class ProjectsCollection
   class FileSystemLayout {
 
     private String SUFFIX_IMPORT_STATUS_FILE = ".$importstatus";
+    private String SUFFIX_CHANGE_MAPPING_FILE = ".$importchanges";
+    private String ACCOUNT_MAPPING_FILE = "$importaccounts";
 
     public File getLockRoot() {
       return lockRoot;
@@ -52,6 +54,18 @@ public class ProjectsCollection
       return new File(lockRoot, format("%s%s", id, SUFFIX_IMPORT_STATUS_FILE));
     }
 
+    boolean isImportStatusFile(File f) {
+      return f.isFile() && f.getName().endsWith(SUFFIX_IMPORT_STATUS_FILE);
+    }
+
+    File getChangeMappingFile(String id) {
+      return new File(lockRoot, format("%s%s", id, SUFFIX_CHANGE_MAPPING_FILE));
+    }
+
+    File getAccountMappingFile() {
+      return new File(lockRoot, ACCOUNT_MAPPING_FILE);
+    }
+
     String resolveProjectName(File f) throws IOException {
       if (!f.isFile()) {
         throw new RuntimeException(
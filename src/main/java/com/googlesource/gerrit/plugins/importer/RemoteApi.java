@@ -17,6 +17,7 @@ package com.googlesource.gerrit.plugins.importer;
 import static com.google.gerrit.extensions.restapi.Url.encode;
 
 import com.google.common.collect.Iterables;
+import com.google.gerrit.common.Nullable;
 import com.google.gerrit.extensions.client.ListChangesOption;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.common.CommentInfo;
@@ -29,6 +30,8 @@ import com.google.gerrit.server.OutputFormat;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Type;
 import java.net.UnknownHostException;
 import java.util.EnumSet;
 import java.util.List;
@@ -37,7 +40,28 @@ import org.apache.http.HttpStatus;
 
 class RemoteApi implements GerritApi {
 
+  private static final EnumSet<ListChangesOption> DETAIL_OPTIONS =
+      EnumSet.of(
+          ListChangesOption.DETAILED_LABELS,
+          ListChangesOption.DETAILED_ACCOUNTS,
+          ListChangesOption.MESSAGES,
+          ListChangesOption.CURRENT_REVISION,
+          ListChangesOption.ALL_REVISIONS,
+          ListChangesOption.ALL_COMMITS);
+
+  private static final EnumSet<ListChangesOption> SUMMARY_OPTIONS =
+      EnumSet.of(ListChangesOption.ALL_REVISIONS);
+
+  /** Gson instances are thread-safe and expensive to create, hence one instance is shared. */
+  private static final Gson GSON = OutputFormat.JSON_COMPACT.newGson();
+
+  private static final Type CHANGES_TYPE = new TypeToken<List<ChangeInfo>>() {}.getType();
+  private static final Type COMMENTS_TYPE =
+      new TypeToken<Map<String, List<CommentInfo>>>() {}.getType();
+  private static final Type SSH_KEYS_TYPE = new TypeToken<List<SshKeyInfo>>() {}.getType();
+
   private final RestSession restSession;
+  private long lastQueryBytes = -1;
 
   RemoteApi(String url, String user, String pass) {
     restSession = new RestSession(url, user, pass);
@@ -48,12 +72,37 @@ class RemoteApi implements GerritApi {
     projectName = encode(projectName);
     String endPoint = "/projects/" + projectName;
     try (RestResponse r = checkedGet(endPoint)) {
-      return newGson().fromJson(r.getReader(), new TypeToken<ProjectInfo>() {}.getType());
+      return GSON.fromJson(r.getReader(), ProjectInfo.class);
     }
   }
 
   @Override
-  public List<ChangeInfo> queryChanges(String projectName, int start, int limit)
+  public List<ChangeInfo> queryChanges(
+      String projectName, @Nullable String query, int start, int limit)
+      throws IOException, BadRequestException {
+    return query(projectName, query, start, limit, DETAIL_OPTIONS);
+  }
+
+  @Override
+  public List<ChangeInfo> queryChangeSummaries(
+      String projectName, @Nullable String query, int start, int limit)
+      throws IOException, BadRequestException {
+    return query(projectName, query, start, limit, SUMMARY_OPTIONS);
+  }
+
+  @Override
+  public ChangeInfo getChange(String projectName, int changeId)
+      throws IOException, BadRequestException {
+    List<ChangeInfo> result = query(projectName, "change:" + changeId, 0, 1, DETAIL_OPTIONS);
+    return !result.isEmpty() ? result.get(0) : null;
+  }
+
+  private List<ChangeInfo> query(
+      String projectName,
+      @Nullable String query,
+      int start,
+      int limit,
+      EnumSet<ListChangesOption> options)
       throws IOException, BadRequestException {
     String endPoint =
         "/changes/?S="
@@ -61,37 +110,59 @@ class RemoteApi implements GerritApi {
             + ((limit > 0) ? "&n=" + limit : "")
             + "&q=project:"
             + projectName
+            + (query != null ? "+" + encode(query) : "")
             + "&O="
-            + Integer.toHexString(
-                ListChangesOption.toBits(
-                    EnumSet.of(
-                        ListChangesOption.DETAILED_LABELS,
-                        ListChangesOption.DETAILED_ACCOUNTS,
-                        ListChangesOption.MESSAGES,
-                        ListChangesOption.CURRENT_REVISION,
-                        ListChangesOption.ALL_REVISIONS,
-                        ListChangesOption.ALL_COMMITS)));
-
-    List<ChangeInfo> result;
+            + Integer.toHexString(ListChangesOption.toBits(options));
+
     try (RestResponse r = checkedGet(endPoint)) {
-      result = newGson().fromJson(r.getReader(), new TypeToken<List<ChangeInfo>>() {}.getType());
+      List<ChangeInfo> result = parseChanges(r.getReader());
+      lastQueryBytes = r.getBytesRead();
+      return result;
     }
+  }
 
+  /** Parses a page of changes as returned by the change query of the source server. */
+  static List<ChangeInfo> parseChanges(Reader reader) {
+    List<ChangeInfo> result = GSON.fromJson(reader, CHANGES_TYPE);
     for (ChangeInfo c : result) {
       for (Map.Entry<String, RevisionInfo> e : c.revisions.entrySet()) {
-        e.getValue().commit.commit = e.getKey();
+        if (e.getValue().commit != null) {
+          e.getValue().commit.commit = e.getKey();
+        }
       }
     }
-
     return result;
   }
 
+  @Override
+  public long getLastQueryBytes() {
+    return lastQueryBytes;
+  }
+
+  @Override
+  public Long getRepositorySize(String projectName) throws IOException {
+    String endPoint = "/projects/" + encode(projectName) + "/statistics.git";
+    Map<String, Object> statistics;
+    try (RestResponse r = checkedGet(endPoint)) {
+      statistics = GSON.fromJson(r.getReader(), new TypeToken<Map<String, Object>>() {}.getType());
+    } catch (BadRequestException e) {
+      // the repository statistics require the owner permission and Gerrit 2.12 or newer
+      return null;
+    }
+    Object loose = statistics.get("size_of_loose_objects");
+    Object packed = statistics.get("size_of_packed_objects");
+    if (!(loose instanceof Number) || !(packed instanceof Number)) {
+      return null;
+    }
+    return ((Number) loose).longValue() + ((Number) packed).longValue();
+  }
+
   @Override
   public GroupInfo getGroup(String groupName) throws IOException, BadRequestException {
     groupName = encode(groupName);
     String endPoint = "/groups/" + groupName + "/detail";
     try (RestResponse r = checkedGet(endPoint)) {
-      return newGson().fromJson(r.getReader(), new TypeToken<GroupInfo>() {}.getType());
+      return GSON.fromJson(r.getReader(), GroupInfo.class);
     }
   }
 
@@ -99,17 +170,18 @@ class RemoteApi implements GerritApi {
   public Iterable<CommentInfo> getComments(int changeId, String rev)
       throws IOException, BadRequestException {
     String endPoint = "/changes/" + changeId + "/revisions/" + rev + "/comments";
-    Map<String, List<CommentInfo>> result;
     try (RestResponse r = restSession.get(endPoint)) {
       if (r.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
         return null;
       }
       assertOK(HttpMethod.GET, endPoint, r);
-      result =
-          newGson()
-              .fromJson(
-                  r.getReader(), new TypeToken<Map<String, List<CommentInfo>>>() {}.getType());
+      return parseComments(r.getReader());
     }
+  }
+
+  /** Parses the comments of a revision, which the source server returns grouped by file. */
+  static Iterable<CommentInfo> parseComments(Reader reader) {
+    Map<String, List<CommentInfo>> result = GSON.fromJson(reader, COMMENTS_TYPE);
     for (Map.Entry<String, List<CommentInfo>> e : result.entrySet()) {
       for (CommentInfo i : e.getValue()) {
         i.path = e.getKey();
@@ -122,7 +194,7 @@ class RemoteApi implements GerritApi {
   public List<SshKeyInfo> getSshKeys(String userId) throws BadRequestException, IOException {
     String endPoint = "/accounts/" + userId + "/sshkeys/";
     try (RestResponse r = checkedGet(endPoint)) {
-      return newGson().fromJson(r.getReader(), new TypeToken<List<SshKeyInfo>>() {}.getType());
+      return GSON.fromJson(r.getReader(), SSH_KEYS_TYPE);
     }
   }
 
@@ -130,15 +202,10 @@ class RemoteApi implements GerritApi {
   public Version getVersion() throws BadRequestException, IOException {
     String endPoint = "/config/server/version";
     try (RestResponse r = checkedGet(endPoint)) {
-      return new Version(
-          (String) newGson().fromJson(r.getReader(), new TypeToken<String>() {}.getType()));
+      return new Version(GSON.fromJson(r.getReader(), String.class));
     }
   }
 
-  private static Gson newGson() {
-    return OutputFormat.JSON_COMPACT.newGson();
-  }
-
   private RestResponse checkedGet(String endPoint) throws IOException, BadRequestException {
     try {
       RestResponse r = restSession.get(endPoint);
@@ -0,0 +1,57 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.extensions.common.GroupInfo;
+import com.google.gerrit.extensions.restapi.BadRequestException;
+import com.google.gwtorm.server.OrmException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Groups that were retrieved from the source system during one group import.
+ *
+ * <p>The cache is shared by the imports of a group and its owner and included groups, so that no
+ * group is retrieved from the source system more than once. It is not thread-safe.
+ */
+class RemoteGroupCache {
+  private final Map<String, GroupInfo> byUuid = new HashMap<>();
+  private final Map<String, GroupInfo> byName = new HashMap<>();
+
+  /**
+   * Returns a group, the group is retrieved from the source system if it is not cached yet.
+   *
+   * @param api the API of the source system
+   * @param id the UUID or the name of the group
+   * @return the group
+   */
+  GroupInfo get(GerritApi api, String id) throws BadRequestException, IOException, OrmException {
+    GroupInfo info = byUuid.get(id);
+    if (info == null) {
+      info = byName.get(id);
+    }
+    if (info == null) {
+      info = api.getGroup(id);
+      put(info);
+    }
+    return info;
+  }
+
+  void put(GroupInfo info) {
+    byUuid.put(info.id, info);
+    byName.put(info.name, info);
+  }
+}
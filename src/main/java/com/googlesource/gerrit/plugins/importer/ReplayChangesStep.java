@@ -18,6 +18,7 @@ import com.google.common.collect.Iterators;
 import com.google.gerrit.common.Nullable;
 import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.common.errors.NoSuchAccountException;
+import com.google.gerrit.extensions.annotations.PluginName;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.extensions.restapi.Url;
@@ -27,6 +28,8 @@ import com.google.gerrit.reviewdb.client.Project;
 import com.google.gerrit.reviewdb.client.RefNames;
 import com.google.gerrit.reviewdb.server.ReviewDb;
 import com.google.gerrit.server.Sequences;
+import com.google.gerrit.server.config.PluginConfig;
+import com.google.gerrit.server.config.PluginConfigFactory;
 import com.google.gerrit.server.index.change.ChangeIndexer;
 import com.google.gerrit.server.notedb.NotesMigration;
 import com.google.gerrit.server.patch.PatchListNotAvailableException;
@@ -38,10 +41,17 @@ import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
+import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
 import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevWalk;
@@ -59,12 +69,16 @@ class ReplayChangesStep {
         @Assisted("targetProject") Project.NameKey targetProject,
         @Assisted("force") boolean force,
         @Assisted("resume") boolean resume,
+        @Assisted("query") @Nullable String query,
         ResumeImportStatistic importStatistic,
         ProgressMonitor pm);
   }
 
   private static Logger log = LoggerFactory.getLogger(ReplayChangesStep.class);
 
+  private static final int DEFAULT_MIN_PAGE_SIZE = 10;
+  private static final long DEFAULT_MAX_PAGE_BYTES = 16 * 1024 * 1024;
+
   private final ReplayRevisionsStep.Factory replayRevisionsFactory;
   private final ReplayInlineCommentsStep.Factory replayInlineCommentsFactory;
   private final ReplayMessagesStep.Factory replayMessagesFactory;
@@ -72,10 +86,14 @@ class ReplayChangesStep {
   private final AddHashtagsStep.Factory addHashtagsFactory;
   private final InsertLinkToOriginalChangeStep.Factory insertLinkToOriginalFactory;
   private final AccountUtil accountUtil;
+  private final IdMappingStore idMappingStore;
   private final ReviewDb db;
   private final ChangeIndexer indexer;
   private final Provider<InternalChangeQuery> queryProvider;
   private final Sequences sequences;
+  private final ImportMetrics metrics;
+  private final ImportStatusIndex importStatusIndex;
+  private final PluginConfig cfg;
   private final String fromGerrit;
   private final GerritApi api;
   private final Repository repo;
@@ -83,9 +101,33 @@ class ReplayChangesStep {
   private final Project.NameKey targetProject;
   private final boolean force;
   private final boolean resume;
+  private final String query;
   private final ResumeImportStatistic importStatistic;
   private final ProgressMonitor pm;
   private final boolean isNoteDbEnabled;
+  private Timestamp lastUpdated;
+  private ImportProjectInfo importInfo;
+  private File importStatus;
+  private ImportFilter filter;
+  private IdMappingLog changeMapping;
+
+  /**
+   * Change IDs that have been reserved in the target system but not used yet.
+   *
+   * <p>Change IDs are reserved in blocks, since under NoteDb each reservation is an update of the
+   * sequence ref in All-Projects that contends with users creating changes.
+   */
+  private final Deque<Integer> changeIds = new ArrayDeque<>();
+
+  /**
+   * Number of changes of the current page that still need a new change ID.
+   *
+   * <p>Only known for an initial import, where every change that matches the filter is created. On
+   * resume most changes already exist in the target system, hence it is {@code 0}.
+   */
+  private int newInPage;
+
+  private final ReviewDbWriteBuffer writeBuffer = new ReviewDbWriteBuffer();
 
   @Inject
   ReplayChangesStep(
@@ -96,11 +138,16 @@ class ReplayChangesStep {
       AddHashtagsStep.Factory addHashtagsFactory,
       InsertLinkToOriginalChangeStep.Factory insertLinkToOriginalFactory,
       AccountUtil accountUtil,
+      IdMappingStore idMappingStore,
       ReviewDb db,
       ChangeIndexer indexer,
       Provider<InternalChangeQuery> queryProvider,
       Sequences sequences,
       NotesMigration migration,
+      ImportMetrics metrics,
+      ImportStatusIndex importStatusIndex,
+      PluginConfigFactory cfgFactory,
+      @PluginName String pluginName,
       @Assisted @Nullable String fromGerrit,
       @Assisted GerritApi api,
       @Assisted Repository repo,
@@ -108,6 +155,7 @@ class ReplayChangesStep {
       @Assisted("targetProject") Project.NameKey targetProject,
       @Assisted("force") boolean force,
       @Assisted("resume") boolean resume,
+      @Assisted("query") @Nullable String query,
       @Assisted ResumeImportStatistic importStatistic,
       @Assisted ProgressMonitor pm) {
     this.replayRevisionsFactory = replayRevisionsFactory;
@@ -117,10 +165,14 @@ class ReplayChangesStep {
     this.addHashtagsFactory = addHashtagsFactory;
     this.insertLinkToOriginalFactory = insertLinkToOriginalFactory;
     this.accountUtil = accountUtil;
+    this.idMappingStore = idMappingStore;
     this.db = db;
     this.indexer = indexer;
     this.queryProvider = queryProvider;
     this.sequences = sequences;
+    this.metrics = metrics;
+    this.importStatusIndex = importStatusIndex;
+    this.cfg = cfgFactory.getFromGerritConfig(pluginName);
     this.fromGerrit = fromGerrit;
     this.api = api;
     this.repo = repo;
@@ -128,88 +180,290 @@ class ReplayChangesStep {
     this.targetProject = targetProject;
     this.force = force;
     this.resume = resume;
+    this.query = query;
     this.importStatistic = importStatistic;
     this.pm = pm;
     this.isNoteDbEnabled = migration.readChanges();
   }
 
+  /**
+   * Enables checkpoints.
+   *
+   * <p>After each page of changes the position of the replay is persisted as {@link
+   * ImportCheckpointInfo} in the import file. If a checkpoint of a previous replay with the same
+   * query exists, the replay continues from this checkpoint.
+   *
+   * @param importInfo the import info that is persisted in the import file
+   * @param importStatus the import file
+   */
+  ReplayChangesStep setCheckpoint(ImportProjectInfo importInfo, File importStatus) {
+    this.importInfo = importInfo;
+    this.importStatus = importStatus;
+    return this;
+  }
+
+  /**
+   * Sets the filter for the changes that are replayed.
+   *
+   * <p>The filter is already applied by the change query, it is checked again for sources that
+   * cannot be queried (project archives). Older patch sets are removed according to the filter.
+   */
+  ReplayChangesStep setFilter(@Nullable ImportFilter filter) {
+    this.filter = filter;
+    return this;
+  }
+
   void replay()
       throws IOException, OrmException, NoSuchAccountException, NoSuchChangeException,
           RestApiException, UpdateException, ConfigInvalidException,
           PatchListNotAvailableException {
-    int start = 0;
-    int limit = GlobalCapability.DEFAULT_MAX_QUERY_LIMIT;
+    int start = getCheckpointStart();
+    AdaptivePageSize pageSize =
+        new AdaptivePageSize(
+            cfg.getInt("minPageSize", DEFAULT_MIN_PAGE_SIZE),
+            cfg.getInt("maxPageSize", GlobalCapability.DEFAULT_MAX_QUERY_LIMIT),
+            cfg.getLong("maxPageBytes", DEFAULT_MAX_PAGE_BYTES));
     pm.beginTask("Replay Changes", ProgressMonitor.UNKNOWN);
-    for (; ; ) {
-      List<ChangeInfo> changes = api.queryChanges(srcProject.get(), start, limit);
-      if (changes.isEmpty()) {
-        break;
+    changeMapping = idMappingStore.openChangeMapping(targetProject);
+    try {
+      if (!resume) {
+        // the mapping may be left from a project with the same name that was deleted
+        changeMapping.clear();
       }
-      start += changes.size();
-      try (RevWalk rw = new RevWalk(repo)) {
-        ChangeInfo last = null;
-        for (ChangeInfo c : changes) {
-          try {
-            replayChange(rw, c);
-          } catch (Exception e) {
-            log.error(String.format("Failed to replay change %s.", Url.decode(c.id)), e);
-            throw e;
-          }
-          last = c;
-          pm.update(1);
+      for (; ; ) {
+        long queryStart = System.nanoTime();
+        List<ChangeInfo> changes;
+        try (StepTimer t = StepTimer.start(importStatistic, "query_changes")) {
+          changes =
+              isLazy()
+                  ? api.queryChangeSummaries(srcProject.get(), query, start, pageSize.get())
+                  : api.queryChanges(srcProject.get(), query, start, pageSize.get());
         }
-        if (!Boolean.TRUE.equals(last._moreChanges)) {
+        metrics.pageLatency.record(System.nanoTime() - queryStart, TimeUnit.NANOSECONDS);
+        if (changes.isEmpty()) {
           break;
         }
+        long bytes = api.getLastQueryBytes();
+        pageSize.record(changes.size(), bytes);
+        metrics.pageSize.record(changes.size());
+        if (bytes >= 0) {
+          metrics.pageBytes.record(bytes);
+          importStatistic.changeQueryBytes =
+              (importStatistic.changeQueryBytes != null ? importStatistic.changeQueryBytes : 0)
+                  + bytes;
+        }
+        start += changes.size();
+        newInPage = resume ? 0 : countMatching(changes);
+        List<Change> replayed = new ArrayList<>(changes.size());
+        try (RevWalk rw = new RevWalk(repo)) {
+          ChangeInfo last = null;
+          try {
+            for (ChangeInfo c : changes) {
+              boolean isNew = !resume && (filter == null || filter.matches(c));
+              try {
+                Change change = replayChange(rw, c);
+                if (change != null) {
+                  replayed.add(change);
+                }
+                if (isNew) {
+                  newInPage--;
+                }
+              } catch (Exception e) {
+                log.error(String.format("Failed to replay change %s.", Url.decode(c.id)), e);
+                throw e;
+              }
+              last = c;
+              if (lastUpdated == null || lastUpdated.before(c.updated)) {
+                lastUpdated = c.updated;
+              }
+              pm.update(1);
+            }
+          } finally {
+            // also flush if a change failed, so that the preceding changes are complete
+            try (StepTimer t = StepTimer.start(importStatistic, "flush_and_index")) {
+              writeBuffer.flush(db);
+              for (Change change : replayed) {
+                indexer.index(db, change);
+              }
+            }
+          }
+          changeMapping.flush();
+          checkpoint(start, last);
+          if (!Boolean.TRUE.equals(last._moreChanges)) {
+            break;
+          }
+        }
       }
+    } finally {
+      changeMapping.close();
     }
     pm.endTask();
   }
 
-  private void replayChange(RevWalk rw, ChangeInfo c)
+  /**
+   * Returns the position from which the replay should start.
+   *
+   * <p>The checkpoint is only used if the change before the checkpoint position is still the last
+   * change that was replayed. Otherwise changes have been modified in the source system since the
+   * checkpoint was written, which changes the order of the changes, and all changes are walked
+   * again.
+   */
+  private int getCheckpointStart() throws RestApiException, IOException {
+    if (importInfo == null || importInfo.checkpoint == null) {
+      return 0;
+    }
+    ImportCheckpointInfo checkpoint = importInfo.checkpoint;
+    if (checkpoint.start <= 0 || !Objects.equals(checkpoint.query, query)) {
+      return 0;
+    }
+    List<ChangeInfo> changes =
+        api.queryChangeSummaries(srcProject.get(), query, checkpoint.start - 1, 1);
+    if (changes.isEmpty() || changes.get(0)._number != checkpoint.lastChange) {
+      log.info(
+          String.format(
+              "Changes of project %s were modified since the last checkpoint,"
+                  + " replaying all changes.",
+              srcProject.get()));
+      return 0;
+    }
+    lastUpdated = checkpoint.lastUpdated;
+    return checkpoint.start;
+  }
+
+  private void checkpoint(int start, ChangeInfo last) throws IOException {
+    if (importInfo == null) {
+      return;
+    }
+    ImportCheckpointInfo checkpoint = new ImportCheckpointInfo();
+    checkpoint.query = query;
+    checkpoint.start = start;
+    checkpoint.lastChange = last._number;
+    checkpoint.lastUpdated = lastUpdated;
+    importInfo.checkpoint = checkpoint;
+    ImportJson.update(importStatus, importInfo, NullProgressMonitor.INSTANCE);
+    importStatusIndex.put(targetProject, importInfo);
+  }
+
+  /**
+   * @return the latest last modified timestamp of the replayed source changes, {@code null} if no
+   *     change was replayed
+   */
+  @Nullable
+  Timestamp getLastUpdated() {
+    return lastUpdated;
+  }
+
+  /**
+   * Whether the changes are queried without details and the details are only retrieved for the
+   * changes that are replayed.
+   *
+   * <p>This is the case for a resume that is not forced, since the changes that were not modified
+   * since the last import are skipped. For an initial import and a forced resume all changes are
+   * replayed and retrieving the details per change would only cost additional requests.
+   */
+  private boolean isLazy() {
+    return resume && !force;
+  }
+
+  /**
+   * Replays a change.
+   *
+   * <p>Change messages and approvals are only written to the {@link ReviewDbWriteBuffer}, the
+   * change must be indexed after the buffer was flushed.
+   *
+   * @return the replayed change, {@code null} if the change was skipped
+   */
+  @Nullable
+  private Change replayChange(RevWalk rw, ChangeInfo c)
       throws IOException, OrmException, NoSuchAccountException, NoSuchChangeException,
           RestApiException, IllegalArgumentException, UpdateException, ConfigInvalidException,
           PatchListNotAvailableException {
+    if (filter != null && !filter.matches(c)) {
+      return null;
+    }
+
     Change change = resume ? findChange(c) : null;
-    boolean resumeChange;
-    if (change == null) {
-      resumeChange = false;
-      change = createChange(c);
-    } else {
-      resumeChange = true;
-      if (!force && change.getLastUpdatedOn().equals(c.updated)) {
-        // change was not modified since last import
-        return;
+    boolean resumeChange = change != null;
+    if (resumeChange && !force && change.getLastUpdatedOn().equals(c.updated)) {
+      // change was not modified since last import
+      return null;
+    }
+
+    if (isLazy()) {
+      ChangeInfo details;
+      try (StepTimer t = StepTimer.start(importStatistic, "get_change_details")) {
+        details = api.getChange(srcProject.get(), c._number);
+      }
+      if (details == null) {
+        log.warn(String.format("Change %s was deleted during the import.", c.id));
+        return null;
       }
+      c = details;
+    }
+    if (filter != null) {
+      filter.trimRevisions(c);
+    }
+    if (!resumeChange) {
+      change = createChange(c);
     }
 
     if (c.revisions.isEmpty()) {
       log.warn(String.format("Change %s has no revisions.", c.id));
-      return;
+      return null;
     }
 
-    replayRevisionsFactory.create(repo, rw, change, c).replay(api);
-    upsertChange(resumeChange, change, c);
-
-    replayInlineCommentsFactory.create(change, c, api, resumeChange).replay();
-    replayMessagesFactory.create(change, c, resumeChange).replay(api);
-    addApprovalsFactory.create(change, c, resume).add(api);
+    if (resumeChange) {
+      updateChange(change, c);
+    }
+    // the change is upserted in the same transaction as the patch sets
+    try (StepTimer t = StepTimer.start(importStatistic, "replay_revisions")) {
+      replayRevisionsFactory.create(repo, rw, change, c).replay(api);
+    }
+    try (StepTimer t = StepTimer.start(importStatistic, "replay_inline_comments")) {
+      replayInlineCommentsFactory.create(change, c, api, resumeChange).replay();
+    }
+    try (StepTimer t = StepTimer.start(importStatistic, "replay_messages")) {
+      replayMessagesFactory.create(change, c, resumeChange, writeBuffer).replay(api);
+    }
+    try (StepTimer t = StepTimer.start(importStatistic, "add_approvals")) {
+      addApprovalsFactory.create(change, c, resume, writeBuffer).add(api);
+    }
     if (isNoteDbEnabled) {
-      addHashtagsFactory.create(change, c, resumeChange).add();
+      try (StepTimer t = StepTimer.start(importStatistic, "add_hashtags")) {
+        addHashtagsFactory.create(change, c, resumeChange).add();
+      }
+    }
+    try (StepTimer t = StepTimer.start(importStatistic, "insert_link_to_original_change")) {
+      insertLinkToOriginalFactory
+          .create(fromGerrit, change, c, resumeChange, changeMapping)
+          .insert();
     }
-
-    insertLinkToOriginalFactory.create(fromGerrit, change, c, resumeChange).insert();
-
-    indexer.index(db, change);
 
     if (resumeChange) {
       importStatistic.numChangesUpdated++;
     } else {
       importStatistic.numChangesCreated++;
     }
+    return change;
   }
 
+  /**
+   * Finds the change in the target system to which a source change was imported.
+   *
+   * <p>The change is looked up in the change mapping of the project first, the change index is
+   * only queried for changes that are not mapped, e.g. because they were imported by an older
+   * version of this plugin.
+   */
   private Change findChange(ChangeInfo c) throws OrmException {
+    Integer id = changeMapping.get(Integer.toString(c._number));
+    if (id != null) {
+      Change change = db.changes().get(new Change.Id(id));
+      if (change != null
+          && change.getProject().equals(targetProject)
+          && change.getKey().get().equals(c.changeId)) {
+        return change;
+      }
+    }
     List<Change> changes =
         ChangeData.asChanges(
             queryProvider
@@ -226,7 +480,7 @@ class ReplayChangesStep {
   private Change createChange(ChangeInfo c)
       throws OrmException, NoSuchAccountException, IOException, RestApiException,
           ConfigInvalidException {
-    Change.Id changeId = new Change.Id(sequences.nextChangeId());
+    Change.Id changeId = nextChangeId();
 
     Change change =
         new Change(
@@ -241,12 +495,36 @@ class ReplayChangesStep {
     return change;
   }
 
-  private void upsertChange(boolean resumeChange, Change change, ChangeInfo c) throws OrmException {
-    if (resumeChange) {
-      change.setStatus(Change.Status.forChangeStatus(c.status));
-      change.setTopic(c.topic);
-      change.setLastUpdatedOn(c.updated);
+  /**
+   * Returns the next reserved change ID.
+   *
+   * <p>If no reserved change ID is left, IDs for all changes of the current page that are still
+   * to be created are reserved at once. On resume it is not known which changes are missing in the
+   * target system, so IDs are reserved one at a time and no IDs are left unused.
+   */
+  private Change.Id nextChangeId() throws OrmException {
+    if (changeIds.isEmpty()) {
+      changeIds.addAll(sequences.nextChangeIds(Math.max(newInPage, 1)));
+    }
+    return new Change.Id(changeIds.poll());
+  }
+
+  private int countMatching(List<ChangeInfo> changes) {
+    if (filter == null) {
+      return changes.size();
+    }
+    int n = 0;
+    for (ChangeInfo c : changes) {
+      if (filter.matches(c)) {
+        n++;
+      }
     }
-    db.changes().upsert(Collections.singleton(change));
+    return n;
+  }
+
+  private static void updateChange(Change change, ChangeInfo c) {
+    change.setStatus(Change.Status.forChangeStatus(c.status));
+    change.setTopic(c.topic);
+    change.setLastUpdatedOn(c.updated);
   }
 }
@@ -24,6 +24,7 @@ import com.google.common.collect.Multimap;
 import com.google.gerrit.common.TimeUtil;
 import com.google.gerrit.common.errors.NoSuchAccountException;
 import com.google.gerrit.extensions.client.Side;
+import com.google.gerrit.extensions.common.AccountInfo;
 import com.google.gerrit.extensions.common.ChangeInfo;
 import com.google.gerrit.extensions.common.CommentInfo;
 import com.google.gerrit.extensions.restapi.RestApiException;
@@ -50,9 +51,9 @@ import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -67,6 +68,13 @@ class ReplayInlineCommentsStep {
         Change change, ChangeInfo changeInfo, GerritApi api, boolean resume);
   }
 
+  /** Resolves the author of a comment to an account in the target system. */
+  interface AuthorResolver {
+    Account.Id resolve(AccountInfo author)
+        throws NoSuchAccountException, IOException, OrmException, RestApiException,
+            ConfigInvalidException;
+  }
+
   private static final Logger log = LoggerFactory.getLogger(ReplayInlineCommentsStep.class);
 
   private final AccountUtil accountUtil;
@@ -82,6 +90,15 @@ class ReplayInlineCommentsStep {
   private final ChangeInfo changeInfo;
   private final GerritApi api;
   private final boolean resume;
+  private final AuthorResolver authorResolver =
+      new AuthorResolver() {
+        @Override
+        public Account.Id resolve(AccountInfo author)
+            throws NoSuchAccountException, IOException, OrmException, RestApiException,
+                ConfigInvalidException {
+          return accountUtil.resolveUser(api, author);
+        }
+      };
 
   @Inject
   public ReplayInlineCommentsStep(
@@ -144,11 +161,7 @@ class ReplayInlineCommentsStep {
         continue;
       }
 
-      Multimap<Account.Id, CommentInfo> commentsByAuthor = ArrayListMultimap.create();
-      for (CommentInfo comment : comments) {
-        Account.Id id = accountUtil.resolveUser(api, comment.author);
-        commentsByAuthor.put(id, comment);
-      }
+      Multimap<Account.Id, CommentInfo> commentsByAuthor = groupByAuthor(comments, authorResolver);
 
       for (Account.Id id : commentsByAuthor.keySet()) {
         insertComments(ps, id, commentsByAuthor.get(id));
@@ -156,21 +169,39 @@ class ReplayInlineCommentsStep {
     }
   }
 
-  private Iterable<CommentInfo> filterComments(PatchSet ps, Iterable<CommentInfo> comments)
+  /** Groups the comments by the account of their author in the target system. */
+  static Multimap<Account.Id, CommentInfo> groupByAuthor(
+      Iterable<CommentInfo> comments, AuthorResolver resolver)
+      throws NoSuchAccountException, IOException, OrmException, RestApiException,
+          ConfigInvalidException {
+    Multimap<Account.Id, CommentInfo> commentsByAuthor = ArrayListMultimap.create();
+    for (CommentInfo comment : comments) {
+      commentsByAuthor.put(resolver.resolve(comment.author), comment);
+    }
+    return commentsByAuthor;
+  }
+
+  private List<CommentInfo> filterComments(PatchSet ps, Iterable<CommentInfo> comments)
       throws OrmException {
     Set<String> existingUuids = new HashSet<>();
     for (PatchLineComment c : db.patchComments().byPatchSet(ps.getId())) {
       existingUuids.add(c.getKey().get());
     }
+    return filterComments(existingUuids, comments);
+  }
 
-    Iterator<CommentInfo> it = comments.iterator();
-    while (it.hasNext()) {
-      CommentInfo c = it.next();
-      if (existingUuids.contains(Url.decode(c.id))) {
-        it.remove();
+  /** @return the comments whose UUID is not contained in {@code existingUuids} */
+  static List<CommentInfo> filterComments(
+      Set<String> existingUuids, Iterable<CommentInfo> comments) {
+    // copy the new comments instead of removing the existing comments from the source list, which
+    // would shift the backing array on every removal
+    List<CommentInfo> result = new ArrayList<>();
+    for (CommentInfo c : comments) {
+      if (!existingUuids.contains(Url.decode(c.id))) {
+        result.add(c);
       }
     }
-    return comments;
+    return result;
   }
 
   private void insertComments(PatchSet ps, Account.Id author, Collection<CommentInfo> comments)
@@ -183,13 +214,14 @@ class ReplayInlineCommentsStep {
     List<Comment> ups = Lists.newArrayList();
 
     for (CommentInfo c : comments) {
+      String uuid = Url.decode(c.id);
       String parent = Url.decode(c.inReplyTo);
-      Comment e = drafts.remove(Url.decode(c.id));
+      Comment e = drafts.remove(uuid);
 
       if (e == null) {
         e =
             new Comment(
-                new Comment.Key(Url.decode(c.id), c.path, ps.getId().get()),
+                new Comment.Key(uuid, c.path, ps.getId().get()),
                 author,
                 c.updated,
                 c.side == Side.PARENT ? (short) 0 : (short) 1,
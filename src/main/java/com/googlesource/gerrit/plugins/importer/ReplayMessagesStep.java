@@ -23,7 +23,6 @@ import com.google.gerrit.reviewdb.client.Change;
 import com.google.gerrit.reviewdb.client.ChangeMessage;
 import com.google.gerrit.reviewdb.client.PatchSet;
 import com.google.gerrit.reviewdb.server.ReviewDb;
-import com.google.gerrit.server.ChangeMessagesUtil;
 import com.google.gerrit.server.CurrentUser;
 import com.google.gerrit.server.IdentifiedUser;
 import com.google.gerrit.server.notedb.ChangeNotes;
@@ -34,47 +33,54 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
 import java.sql.Timestamp;
-import java.util.Collections;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 
 class ReplayMessagesStep {
 
   interface Factory {
-    ReplayMessagesStep create(Change change, ChangeInfo changeInfo, boolean resume);
+    ReplayMessagesStep create(
+        Change change, ChangeInfo changeInfo, boolean resume, ReviewDbWriteBuffer writeBuffer);
   }
 
   private final AccountUtil accountUtil;
   private final ChangeUpdate.Factory updateFactory;
-  private final ChangeMessagesUtil cmUtil;
   private final ReviewDb db;
   private final IdentifiedUser.GenericFactory genericUserFactory;
   private final ChangeNotes.Factory changeNotesFactory;
   private final Change change;
   private final ChangeInfo changeInfo;
   private final boolean resume;
+  private final ReviewDbWriteBuffer writeBuffer;
 
   @Inject
   public ReplayMessagesStep(
       AccountUtil accountUtil,
       ChangeUpdate.Factory updateFactory,
-      ChangeMessagesUtil cmUtil,
       IdentifiedUser.GenericFactory genericUserFactory,
       ChangeNotes.Factory changeNotesFactory,
       ReviewDb db,
       @Assisted Change change,
       @Assisted ChangeInfo changeInfo,
-      @Assisted boolean resume) {
+      @Assisted boolean resume,
+      @Assisted ReviewDbWriteBuffer writeBuffer) {
     this.accountUtil = accountUtil;
     this.updateFactory = updateFactory;
-    this.cmUtil = cmUtil;
     this.db = db;
     this.genericUserFactory = genericUserFactory;
     this.changeNotesFactory = changeNotesFactory;
     this.change = change;
     this.changeInfo = changeInfo;
     this.resume = resume;
+    this.writeBuffer = writeBuffer;
   }
 
+  /**
+   * Replays the change messages.
+   *
+   * <p>The messages are written to ReviewDb via the {@link ReviewDbWriteBuffer}. Messages with an
+   * author are also recorded in NoteDb by one update per message, since an update is bound to the
+   * author and the timestamp of the message.
+   */
   void replay(GerritApi api)
       throws NoSuchAccountException, NoSuchChangeException, OrmException, IOException,
           RestApiException, ConfigInvalidException {
@@ -95,14 +101,15 @@ class ReplayMessagesStep {
         ChangeUpdate update = updateFactory.create(notes, user, ts);
         ChangeMessage cmsg = new ChangeMessage(msgKey, userId, ts, psId);
         cmsg.setMessage(msg.message);
-        cmUtil.addChangeMessage(db, update, cmsg);
+        update.setChangeMessage(cmsg.getMessage());
+        writeBuffer.insertChangeMessage(cmsg);
         update.commit();
       } else {
         // Message create by the GerritPersonIdent user
         ChangeMessage cmsg =
             new ChangeMessage(new ChangeMessage.Key(change.getId(), msg.id), null, ts, psId);
         cmsg.setMessage(msg.message);
-        db.changeMessages().insert(Collections.singleton(cmsg));
+        writeBuffer.insertChangeMessage(cmsg);
       }
     }
   }
@@ -0,0 +1,58 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.common.Nullable;
+import com.google.inject.Singleton;
+
+/**
+ * Replay time per change of the imports that were done since the plugin was loaded.
+ *
+ * <p>The time of writing the changes in the target system cannot be measured by a dry run, it is
+ * projected from the time that earlier imports needed per replayed change. The time of the change
+ * queries and of retrieving the change details is not counted, since these requests to the source
+ * system are measured by the dry run itself.
+ */
+@Singleton
+class ReplayRate {
+  private long nanos;
+  private long changes;
+
+  synchronized void record(ResumeImportStatistic statistic) {
+    int replayed = statistic.numChangesCreated + statistic.numChangesUpdated;
+    if (replayed == 0 || statistic.steps == null) {
+      return;
+    }
+    long replayNanos =
+        timeNs(statistic, "replay_changes")
+            - timeNs(statistic, "query_changes")
+            - timeNs(statistic, "get_change_details");
+    if (replayNanos <= 0) {
+      return;
+    }
+    nanos += replayNanos;
+    changes += replayed;
+  }
+
+  /** @return the average replay time per change, {@code null} if no change was replayed yet */
+  @Nullable
+  synchronized Long getNanosPerChange() {
+    return changes > 0 ? nanos / changes : null;
+  }
+
+  private static long timeNs(ImportStatistic statistic, String step) {
+    StepStatistic s = statistic.steps.get(step);
+    return s != null ? s.timeNs : 0;
+  }
+}
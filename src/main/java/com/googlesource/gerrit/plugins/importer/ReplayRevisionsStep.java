@@ -29,6 +29,7 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.lib.Constants;
@@ -141,6 +142,7 @@ class ReplayRevisionsStep {
         change.setCurrentPatchSet(info);
       }
 
+      db.changes().upsert(Collections.singleton(change));
       db.patchSets().insert(patchSets);
       db.commit();
     } finally {
@@ -30,7 +30,7 @@ public class RestResponse extends HttpResponse {
   @Override
   public Reader getReader() throws IllegalStateException, IOException {
     if (reader == null && response.getEntity() != null) {
-      reader = new InputStreamReader(response.getEntity().getContent());
+      reader = new InputStreamReader(getContent());
       reader.skip(JSON_MAGIC.length);
     }
     return reader;
@@ -17,19 +17,18 @@ package com.googlesource.gerrit.plugins.importer;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
 import com.google.gerrit.extensions.restapi.RestApiException;
 import com.google.gerrit.sshd.CommandMetaData;
-import com.google.gerrit.sshd.SshCommand;
 import com.google.inject.Inject;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
 @RequiresCapability(ImportCapability.ID)
 @CommandMetaData(name = "resume-project", description = "Resumes project import")
-public class ResumeProjectCommand extends SshCommand {
+public class ResumeProjectCommand extends ImportFilterCommand {
 
   @Option(
       name = "--user",
       aliases = {"-u"},
-      required = true,
+      required = false,
       metaVar = "NAME",
       usage = "user on remote system")
   private String user;
@@ -37,7 +36,7 @@ public class ResumeProjectCommand extends SshCommand {
   @Option(
       name = "--pass",
       aliases = {"-p"},
-      required = true,
+      required = false,
       metaVar = "-|PASS",
       usage = "password of remote user")
   private String pass;
@@ -45,6 +44,11 @@ public class ResumeProjectCommand extends SshCommand {
   @Option(name = "--force", usage = "Whether the resume should be done forcefully.")
   private boolean force;
 
+  @Option(
+      name = "--incremental",
+      usage = "only resume the changes that were modified since the last import")
+  private boolean incremental;
+
   @Option(name = "--quiet", usage = "suppress progress messages")
   private boolean quiet;
 
@@ -70,6 +74,8 @@ public class ResumeProjectCommand extends SshCommand {
       input.user = user;
       input.pass = PasswordUtil.readPassword(in, pass);
       input.force = force;
+      input.incremental = incremental;
+      input.filter = getFilter();
       ResumeImportStatistic stats = resume.apply(rsrc, input);
       stdout.print("Created Changes: " + stats.numChangesCreated + "\n");
       stdout.print("Updated Changes: " + stats.numChangesUpdated + "\n");
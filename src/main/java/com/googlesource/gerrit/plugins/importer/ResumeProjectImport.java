@@ -51,6 +51,8 @@ public class ResumeProjectImport implements RestModifyView<ImportProjectResource
     public String user;
     public String pass;
     public boolean force;
+    public boolean incremental;
+    public ImportFilter filter;
 
     private void validateResumeImport() throws BadRequestException {
       if (Strings.isNullOrEmpty(user)) {
@@ -100,7 +102,7 @@ public class ResumeProjectImport implements RestModifyView<ImportProjectResource
           PermissionBackendException, PatchListNotAvailableException {
     if (copy) {
       input.validateResumeCopy();
-    } else {
+    } else if (!ProjectArchive.isArchive(rsrc.getInfo().from)) {
       input.validateResumeImport();
     }
 
@@ -108,7 +110,13 @@ public class ResumeProjectImport implements RestModifyView<ImportProjectResource
         .create(rsrc.getName())
         .setCopy(copy)
         .setErr(err)
-        .resume(input.user, input.pass, input.force, rsrc.getImportStatus());
+        .resume(
+            input.user,
+            input.pass,
+            input.force,
+            input.incremental,
+            input.filter,
+            rsrc.getImportStatus());
   }
 
   public static class OnProjects
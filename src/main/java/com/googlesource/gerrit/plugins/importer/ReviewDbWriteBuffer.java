@@ -0,0 +1,54 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.reviewdb.client.ChangeMessage;
+import com.google.gerrit.reviewdb.client.PatchSetApproval;
+import com.google.gerrit.reviewdb.server.ReviewDb;
+import com.google.gwtorm.server.OrmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Collects ReviewDb rows that are not read by later replay steps, so that they can be written for a
+ * whole page of changes in one batch statement per table.
+ *
+ * <p>Changes must not be indexed before the buffer was flushed, since the index reads the messages
+ * and approvals from the database.
+ */
+class ReviewDbWriteBuffer {
+  private final List<ChangeMessage> changeMessages = new ArrayList<>();
+  private final List<PatchSetApproval> approvals = new ArrayList<>();
+
+  void insertChangeMessage(ChangeMessage cmsg) {
+    changeMessages.add(cmsg);
+  }
+
+  void insertApprovals(Collection<PatchSetApproval> psas) {
+    approvals.addAll(psas);
+  }
+
+  void flush(ReviewDb db) throws OrmException {
+    if (!changeMessages.isEmpty()) {
+      db.changeMessages().insert(changeMessages);
+      changeMessages.clear();
+    }
+    if (!approvals.isEmpty()) {
+      db.patchSetApprovals().insert(approvals);
+      approvals.clear();
+    }
+  }
+}
@@ -25,6 +25,7 @@ class SshModule extends PluginCommandModule {
     command(CopyProjectCommand.class);
     command(ResumeCopyCommand.class);
     command(CompleteProjectImportCommand.class);
+    command(ExportProjectCommand.class);
 
     command(GroupCommand.class);
   }
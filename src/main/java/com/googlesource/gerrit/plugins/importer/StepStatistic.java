@@ -0,0 +1,27 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+class StepStatistic {
+  /**
+   * Time of the step in nanoseconds, summed up over all runs of the step. Not serialized, {@link
+   * #timeMs} is derived from the sum so that steps that take less than a millisecond per run are
+   * not rounded down to zero run by run.
+   */
+  transient long timeNs;
+
+  long timeMs;
+  Long allocatedBytes;
+}
@@ -0,0 +1,79 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time and the heap allocation of an import step and records them as {@link
+ * StepStatistic} in the {@link ImportStatistic}.
+ *
+ * <p>The allocation is measured for the current thread, this covers the whole step since the
+ * import steps run in the thread of the request. If a step is run several times the measurements
+ * are summed up.
+ */
+class StepTimer implements AutoCloseable {
+  private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+  static StepTimer start(ImportStatistic statistic, String step) {
+    return new StepTimer(statistic, step);
+  }
+
+  private final ImportStatistic statistic;
+  private final String step;
+  private final long start;
+  private final long startAllocated;
+
+  private StepTimer(ImportStatistic statistic, String step) {
+    this.statistic = statistic;
+    this.step = step;
+    this.startAllocated = allocatedBytes();
+    this.start = System.nanoTime();
+  }
+
+  @Override
+  public void close() {
+    long timeNs = System.nanoTime() - start;
+    long allocated = allocatedBytes();
+    if (statistic.steps == null) {
+      statistic.steps = new LinkedHashMap<>();
+    }
+    StepStatistic s = statistic.steps.get(step);
+    if (s == null) {
+      s = new StepStatistic();
+      statistic.steps.put(step, s);
+    }
+    s.timeNs += timeNs;
+    s.timeMs = TimeUnit.NANOSECONDS.toMillis(s.timeNs);
+    if (startAllocated >= 0 && allocated >= 0) {
+      long previous = s.allocatedBytes != null ? s.allocatedBytes : 0;
+      s.allocatedBytes = previous + allocated - startAllocated;
+    }
+  }
+
+  /** @return the bytes allocated by the current thread so far, {@code -1} if not supported */
+  private static long allocatedBytes() {
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,71 @@
+// Copyright (C) 2018 The Android Open Source Project
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.googlesource.gerrit.plugins.importer;
+
+import com.google.gerrit.reviewdb.client.AccountGroup;
+import com.google.gerrit.reviewdb.client.AccountGroupName;
+import com.google.gerrit.reviewdb.server.ReviewDb;
+import com.google.gwtorm.server.OrmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Allocates unique names for the groups of one group import.
+ *
+ * <p>The names of all existing groups are loaded once, when the first name clashes. A name
+ * that is occupied is replaced by '{@code <name>_imported}' and, if that is occupied too, by
+ * '{@code <name>_imported-<index>}'. The next index is remembered per name, so that the indexes
+ * that are already known to be occupied are not probed again. It is not thread-safe.
+ */
+class UniqueGroupNames {
+  private final Map<String, Integer> nextIndex = new HashMap<>();
+  private Set<String> names;
+
+  /**
+   * Returns a name that is not used by any group and reserves it.
+   *
+   * @param db the database from which the existing group names are loaded
+   * @param name the name of the group in the source system
+   * @return the given name if it is not occupied, otherwise a new unique name
+   */
+  String allocate(ReviewDb db, String name) throws OrmException {
+    if (names == null) {
+      if (db.accountGroupNames().get(new AccountGroup.NameKey(name)) == null) {
+        // the name is inserted right away, so that it is contained once the names are loaded
+        return name;
+      }
+      names = new HashSet<>();
+      for (AccountGroupName n : db.accountGroupNames().all()) {
+        names.add(n.getName());
+      }
+    }
+    if (names.add(name)) {
+      return name;
+    }
+    String base = name + "_imported";
+    if (names.add(base)) {
+      return base;
+    }
+    Integer i = nextIndex.get(base);
+    int index = i != null ? i : 1;
+    while (!names.add(base + "-" + index)) {
+      index++;
+    }
+    nextIndex.put(base, index + 1);
+    return base + "-" + index;
+  }
+}
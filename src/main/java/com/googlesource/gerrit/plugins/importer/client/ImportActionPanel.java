@@ -18,10 +18,28 @@ import com.google.gwt.event.dom.client.ClickHandler;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.FlowPanel;
 
+/**
+ * Actions for an imported project.
+ *
+ * <p>The buttons are only created when the panel is attached, and the dialogs only when a button
+ * is clicked, so that tables with many imports stay cheap to build.
+ */
 public class ImportActionPanel extends FlowPanel {
+  private final String project;
+  private final boolean copy;
 
-  ImportActionPanel(final String project, final boolean copy) {
+  ImportActionPanel(String project, boolean copy) {
+    this.project = project;
+    this.copy = copy;
     setStyleName("importer-action-panel");
+  }
+
+  @Override
+  protected void onLoad() {
+    super.onLoad();
+    if (getWidgetCount() > 0) {
+      return;
+    }
     add(
         new Button(
             "Resume...", (ClickHandler) event -> (new ResumeImportDialog(project, copy)).center()));
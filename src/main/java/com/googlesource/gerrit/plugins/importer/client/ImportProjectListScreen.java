@@ -19,12 +19,21 @@ import com.google.gerrit.client.rpc.Natives;
 import com.google.gerrit.plugin.client.Plugin;
 import com.google.gerrit.plugin.client.rpc.RestApi;
 import com.google.gerrit.plugin.client.screen.Screen;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.KeyUpHandler;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Anchor;
+import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.FlexTable;
 import com.google.gwt.user.client.ui.FlexTable.FlexCellFormatter;
+import com.google.gwt.user.client.ui.FlowPanel;
+import com.google.gwt.user.client.ui.HorizontalPanel;
 import com.google.gwt.user.client.ui.InlineHyperlink;
+import com.google.gwt.user.client.ui.Label;
+import com.google.gwt.user.client.ui.TextBox;
 import com.google.gwt.user.client.ui.VerticalPanel;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class ImportProjectListScreen extends VerticalPanel {
@@ -36,27 +45,110 @@ public class ImportProjectListScreen extends VerticalPanel {
     }
   }
 
+  private static final int PAGE_SIZE = 25;
+
+  private final TextBox filterTxt;
+  private final FlowPanel results;
+  private final Button prev;
+  private final Button next;
+  private String match = "";
+  private int start;
+
   ImportProjectListScreen() {
     setStyleName("importer-imports-panel");
 
-    new RestApi("config")
-        .id("server")
-        .view(Plugin.get().getPluginName(), "projects")
-        .get(
-            new AsyncCallback<NativeMap<ImportProjectInfo>>() {
-              @Override
-              public void onSuccess(NativeMap<ImportProjectInfo> info) {
-                display(info);
-              }
-
-              @Override
-              public void onFailure(Throwable caught) {
-                // never invoked
+    HorizontalPanel filterPanel = new HorizontalPanel();
+    filterPanel.setStyleName("importer-filter-panel");
+    filterPanel.add(new Label("Filter:"));
+    filterTxt = new TextBox();
+    filterTxt.setVisibleLength(40);
+    filterTxt.addKeyUpHandler(
+        (KeyUpHandler)
+            event -> {
+              String m = filterTxt.getValue().trim();
+              if (!m.equals(match)) {
+                match = m;
+                start = 0;
+                load();
               }
             });
+    filterPanel.add(filterTxt);
+    add(filterPanel);
+
+    results = new FlowPanel();
+    add(results);
+
+    HorizontalPanel navigation = new HorizontalPanel();
+    navigation.setStyleName("importer-navigation-panel");
+    prev =
+        new Button(
+            "Prev",
+            (ClickHandler)
+                event -> {
+                  start = Math.max(start - PAGE_SIZE, 0);
+                  load();
+                });
+    prev.setEnabled(false);
+    navigation.add(prev);
+    next =
+        new Button(
+            "Next",
+            (ClickHandler)
+                event -> {
+                  start += PAGE_SIZE;
+                  load();
+                });
+    next.setEnabled(false);
+    navigation.add(next);
+    add(navigation);
+
+    load();
+  }
+
+  /**
+   * Loads the current page of imported projects.
+   *
+   * <p>One project more than fits on the page is requested to know whether there is a next page.
+   * Responses for a page or filter that is no longer current are ignored.
+   */
+  private void load() {
+    final String m = match;
+    final int s = start;
+    RestApi api =
+        new RestApi("config")
+            .id("server")
+            .view(Plugin.get().getPluginName(), "projects")
+            .addParameter("n", PAGE_SIZE + 1)
+            .addParameter("S", s);
+    if (!m.isEmpty()) {
+      api.addParameter("match", m);
+    }
+    api.get(
+        new AsyncCallback<NativeMap<ImportProjectInfo>>() {
+          @Override
+          public void onSuccess(NativeMap<ImportProjectInfo> info) {
+            if (s == start && m.equals(match)) {
+              display(info);
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable caught) {
+            // never invoked
+          }
+        });
   }
 
   private void display(NativeMap<ImportProjectInfo> map) {
+    List<String> projects = new ArrayList<>(map.keySet());
+    Collections.sort(projects);
+    boolean more = projects.size() > PAGE_SIZE;
+    if (more) {
+      projects = projects.subList(0, PAGE_SIZE);
+    }
+    prev.setEnabled(start > 0);
+    next.setEnabled(more);
+
     int columns = 6;
     FlexTable t = new FlexTable();
     t.setStyleName("importer-importProjectTable");
@@ -75,7 +167,7 @@ public class ImportProjectListScreen extends VerticalPanel {
     t.setText(0, 5, "Actions");
 
     int row = 1;
-    for (final String project : map.keySet()) {
+    for (final String project : projects) {
       ImportProjectInfo info = map.get(project);
 
       for (int c = 0; c < columns; c++) {
@@ -111,7 +203,12 @@ public class ImportProjectListScreen extends VerticalPanel {
       row++;
     }
 
-    add(t);
+    results.clear();
+    if (projects.isEmpty()) {
+      results.add(new Label(match.isEmpty() ? "No imports." : "No matching imports."));
+    } else {
+      results.add(t);
+    }
   }
 
   public static String removeNs(String timestamp) {
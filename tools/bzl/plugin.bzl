@@ -2,5 +2,6 @@ load(
     "@com_googlesource_gerrit_bazlets//:gerrit_plugin.bzl",
     "GWT_PLUGIN_DEPS",
     "PLUGIN_DEPS",
+    "PLUGIN_TEST_DEPS",
     "gerrit_plugin",
 )